@@ -0,0 +1,248 @@
+package roughclustering;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Implements the distance bounds used to accelerate the rough assignment across the iterations of a
+ * clusterer (as in Elkan's KMeans): for each instance an upper bound on the distance from its nearest
+ * representative and a lower bound on the distance from every representative.
+ * An instance is assigned to the nearest representative and to every representative c such that
+ * minDist/d(x,c) >= threshold, i.e. d(x,c) <= minDist/threshold: the representatives whose lower
+ * bound, or whose distance from the nearest representative minus the upper bound, exceeds this reach
+ * are skipped without computing their distance.
+ * When the representatives move the bounds are loosened by the movement, when the weights change
+ * they are rescaled by the smallest and largest ratio between the new and the old weights.
+ * The skipped representatives are farther than the reach by a tolerance, so the assignment is
+ * exactly the one of the full computation. Bounds are only used with non-negative weights (for
+ * which the distance satisfies the triangle inequality) and for instances with defined distances,
+ * the other instances are assigned with the full computation
+ * @author Andrea Campagner
+ *
+ */
+public class AssignmentBounds {
+	private static final double TOLERANCE = 1e-9;
+
+	private final int numInstances;
+	private final int k;
+	private final double[] lower;
+	private final double[] upper;
+	private final int[] nearest;
+	private final boolean[] valid;
+	private double[][] previousCentroids = null;
+	private double[] previousWeights = null;
+	private final LongAdder evaluations = new LongAdder();
+
+	//state of the current assignment
+	private DistanceKernel kernel;
+	private double[][] centroids;
+	private double[] weights;
+	private double threshold;
+	private double ratio;
+	private boolean enabled;
+	private double[][] between;
+	private double[] moved;
+	private double minScale;
+	private double maxScale;
+	private double tolerance;
+
+	/**
+	 * Construct the bounds for the given number of instances and representatives
+	 * @param numInstances, number of instances
+	 * @param k, number of representatives
+	 */
+	public AssignmentBounds(int numInstances, int k){
+		this.numInstances = numInstances;
+		this.k = k;
+		lower = new double[numInstances*k];
+		upper = new double[numInstances];
+		nearest = new int[numInstances];
+		valid = new boolean[numInstances];
+	}
+
+	/**
+	 * Prepare the assignment to the given representatives: compute the distances between the
+	 * representatives, their movement and the change of the weights w.r.t. the previous assignment
+	 * @param kernel, distance kernel of the dataset
+	 * @param centroids, values of the cluster representatives
+	 * @param weights, attribute weights
+	 * @param threshold, threshold for insertion into clusters
+	 */
+	void prepare(DistanceKernel kernel, double[][] centroids, double[] weights, double threshold){
+		this.kernel = kernel;
+		this.centroids = centroids;
+		this.weights = weights;
+		this.threshold = threshold;
+		//the reach is minDist/min(threshold, 1), with threshold <= 0 every representative is included
+		ratio = Math.min(threshold, 1);
+		if(Double.isNaN(threshold))
+			ratio = 1;
+		enabled = ratio > 0 && centroids.length == k && VantagePointTree.isMetric(weights);
+		double sum = 0;
+		for(double w : weights)
+			sum += w;
+		tolerance = TOLERANCE*Math.max(sum, 1);
+
+		between = new double[k][k];
+		for(int j = 0; enabled && j < k; j++)
+			for(int l = j + 1; l < k; l++){
+				between[j][l] = between[l][j] = kernel.distance(centroids[j], centroids[l], weights);
+				if(!Double.isFinite(between[j][l]))
+					enabled = false;
+			}
+
+		//Movement of the representatives and change of the weights
+		moved = new double[k];
+		minScale = 1;
+		maxScale = 1;
+		boolean keep = enabled && previousCentroids != null;
+		if(keep){
+			minScale = Double.POSITIVE_INFINITY;
+			maxScale = 0;
+			for(int a = 0; a < weights.length; a++){
+				if(previousWeights[a] == 0){
+					if(weights[a] > 0)
+						maxScale = Double.POSITIVE_INFINITY;
+					continue;
+				}
+				minScale = Math.min(minScale, weights[a]/previousWeights[a]);
+				maxScale = Math.max(maxScale, weights[a]/previousWeights[a]);
+			}
+			if(minScale > maxScale){
+				//all weights are 0
+				minScale = 0;
+				maxScale = 0;
+			}
+			for(int j = 0; j < k; j++){
+				moved[j] = kernel.distance(previousCentroids[j], centroids[j], weights);
+				if(!Double.isFinite(moved[j]))
+					keep = false;
+			}
+		}
+		if(!keep)
+			for(int i = 0; i < numInstances; i++)
+				valid[i] = false;
+		previousCentroids = RoughCentroidClusterer.copy(centroids);
+		previousWeights = weights.clone();
+	}
+
+	/**
+	 * Compute the rough assignment of the instances in [from, to) and update their bounds
+	 * @param clustering, assignment of the instances
+	 * @param from, first instance
+	 * @param to, instance following the last one
+	 */
+	void assign(Memberships clustering, int from, int to){
+		double[] dists = new double[centroids.length];
+		boolean[] computed = new boolean[centroids.length];
+		long count = 0;
+		for(int i = from; i < to; i++){
+			clustering.clear(i);
+			if(!enabled || !valid[i]){
+				full(i, dists, clustering);
+				count += centroids.length;
+			}else{
+				bounded(i, dists, computed, clustering);
+				for(int j = 0; j < k; j++)
+					if(computed[j])
+						count++;
+			}
+		}
+		evaluations.add(count);
+	}
+	
+	/**
+	 * Compute the number of distances between instances and representatives computed since the last call
+	 * @return the number of distance evaluations
+	 */
+	long evaluations(){
+		return evaluations.sumThenReset();
+	}
+
+	/**
+	 * Assign an instance computing all the distances, and reset its bounds
+	 */
+	private void full(int i, double[] dists, Memberships clustering){
+		double minDist = Double.MAX_VALUE;
+		int a = -1;
+		boolean finite = true;
+		for(int j = 0; j < centroids.length; j++){
+			dists[j] = kernel.distance(i, centroids[j], weights);
+			if(dists[j] < minDist){
+				minDist = dists[j];
+				a = j;
+			}
+			finite &= Double.isFinite(dists[j]);
+		}
+		for(int j = 0; j < centroids.length; j++)
+			if(dists[j] == minDist || minDist/dists[j] >= threshold)
+				clustering.add(i, j);
+		valid[i] = enabled && finite;
+		if(valid[i]){
+			for(int j = 0; j < k; j++)
+				lower[i*k + j] = dists[j];
+			upper[i] = minDist;
+			nearest[i] = a;
+		}
+	}
+
+	/**
+	 * Assign an instance with valid bounds, computing only the distances that cannot be excluded
+	 */
+	private void bounded(int i, double[] dists, boolean[] computed, Memberships clustering){
+		int a = nearest[i];
+		int base = i*k;
+		//Loosen the bounds by the change of the weights and the movement of the representatives
+		double u = (maxScale == Double.POSITIVE_INFINITY)? maxScale : upper[i]*maxScale + moved[a];
+		for(int j = 0; j < k; j++)
+			lower[base + j] = Math.max(0, lower[base + j]*minScale - moved[j]);
+
+		//If no other representative can be within the reach of the upper bound the instance
+		//is only assigned to its nearest representative
+		boolean others = false;
+		double reach = u/ratio + tolerance;
+		for(int j = 0; j < k && !others; j++)
+			if(j != a && !excluded(j, a, u, reach, base))
+				others = true;
+		for(int j = 0; j < k; j++)
+			computed[j] = false;
+		if(!others){
+			upper[i] = u;
+			clustering.add(i, a);
+			return;
+		}
+
+		//Tighten the upper bound and compute the distances of the representatives within the reach
+		dists[a] = kernel.distance(i, centroids[a], weights);
+		computed[a] = true;
+		u = dists[a];
+		reach = u/ratio + tolerance;
+		for(int j = 0; j < k; j++)
+			if(j != a && !excluded(j, a, u, reach, base)){
+				dists[j] = kernel.distance(i, centroids[j], weights);
+				computed[j] = true;
+			}
+		double minDist = Double.MAX_VALUE;
+		int b = a;
+		for(int j = 0; j < k; j++)
+			if(computed[j]){
+				lower[base + j] = dists[j];
+				if(dists[j] < minDist){
+					minDist = dists[j];
+					b = j;
+				}
+			}
+		for(int j = 0; j < k; j++)
+			if(computed[j] && (dists[j] == minDist || minDist/dists[j] >= threshold))
+				clustering.add(i, j);
+		upper[i] = minDist;
+		nearest[i] = b;
+	}
+
+	/**
+	 * Checks whether representative j is farther than the reach from the instance, given its lower
+	 * bound or its distance from the nearest representative a (d(x,j) >= d(a,j) - d(x,a))
+	 */
+	private boolean excluded(int j, int a, double u, double reach, int base){
+		return lower[base + j] - tolerance > reach || between[a][j] - u - tolerance > reach;
+	}
+}
@@ -0,0 +1,221 @@
+package roughclustering;
+
+import java.util.Arrays;
+
+/**
+ * Implements an orthopair over an indexed universe, the regions P, Bnd and N are stored
+ * as bitsets so that meet, join, disjointness checks and size queries are word-parallel
+ * and do not require hashing or copying the instances.
+ * {@link Orthopair} is backed by this representation when built over an indexed universe
+ * @author Andrea Campagner
+ *
+ */
+public class BitOrthopair {
+	private final Universe universe;
+	private final long[] N;
+	private final long[] P;
+	private final long[] Bnd;
+
+	public BitOrthopair(BitOrthopair o){
+		universe = o.universe;
+		N = o.N.clone();
+		P = o.P.clone();
+		Bnd = o.Bnd.clone();
+	}
+
+	/**
+	 * Construct an orthopair from its bitset regions, the arrays are not copied
+	 * @param universe, the indexed universe
+	 * @param n, negative region
+	 * @param p, positive region
+	 * @param bnd, boundary region
+	 * @throws Exception - the sets are non-disjoint or not defined on the universe
+	 */
+	public BitOrthopair(Universe universe, long[] n, long[] p, long[] bnd) throws Exception{
+		super();
+		int words = universe.words();
+		if(n.length != words || p.length != words || bnd.length != words)
+			throw new Exception("Sets are not defined on the universe");
+		if(Bitsets.intersects(p, n) || Bitsets.intersects(p, bnd) || Bitsets.intersects(bnd, n))
+			throw new Exception("Sets are non-disjoint");
+		this.universe = universe;
+		N = n;
+		P = p;
+		Bnd = bnd;
+	}
+
+	/**
+	 * Construct the bitset representation of a HashSet based orthopair
+	 * @param universe, the indexed universe
+	 * @param o, an orthopair
+	 * @throws Exception - some instance does not belong to the universe
+	 */
+	public BitOrthopair(Universe universe, Orthopair o) throws Exception{
+		this(universe, universe.toBits(o.negative()), universe.toBits(o.lower()), universe.toBits(o.boundary()));
+	}
+
+	/**
+	 * Convert this orthopair to an {@link Orthopair}, backed by a copy of the bitsets
+	 * @return the corresponding orthopair
+	 * @throws Exception
+	 */
+	public Orthopair toOrthopair() throws Exception{
+		return new Orthopair(new BitOrthopair(this));
+	}
+
+	public Universe getIndexedUniverse(){
+		return universe;
+	}
+
+	public long[] getN(){
+		return N;
+	}
+
+	public long[] getP(){
+		return P;
+	}
+
+	public long[] getBnd(){
+		return Bnd;
+	}
+
+	public int getUniverseSize(){
+		return Bitsets.cardinality(P) + Bitsets.cardinality(Bnd) + Bitsets.cardinality(N);
+	}
+
+	/**
+	 * Checks whether this orthopair and the given one are defined on the same universe,
+	 * i.e. they share the indexed universe and P, Bnd and N cover the same instances
+	 * @param o, an orthopair
+	 * @return whether the universes coincide
+	 */
+	public boolean sameUniverse(BitOrthopair o){
+		if(universe != o.universe)
+			return false;
+		for(int i = 0; i < P.length; i++)
+			if((P[i] | Bnd[i] | N[i]) != (o.P[i] | o.Bnd[i] | o.N[i]))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Performs the join operation of the "truth" ordering
+	 * @param o, an orthopair
+	 * @return the join orthopair
+	 * @throws Exception - the orthopairs are defined on different universes
+	 */
+	public BitOrthopair union(BitOrthopair o) throws Exception{
+		if(!sameUniverse(o))
+			throw new Exception("Different universes");
+		long[] n = new long[N.length];
+		long[] p = new long[P.length];
+		long[] bnd = new long[Bnd.length];
+		for(int i = 0; i < n.length; i++){
+			n[i] = N[i] & o.N[i];
+			p[i] = P[i] | o.P[i];
+			bnd[i] = (Bnd[i] | o.Bnd[i]) & ~n[i] & ~p[i];
+		}
+		return new BitOrthopair(universe, n, p, bnd);
+	}
+
+	/**
+	 * Performs the meet operation of the "truth" ordering
+	 * @param o, an orthopair
+	 * @return the meet orthopair
+	 * @throws Exception - the orthopairs are defined on different universes
+	 */
+	public BitOrthopair intersect(BitOrthopair o) throws Exception{
+		if(!sameUniverse(o))
+			throw new Exception("Different universes");
+		long[] n = new long[N.length];
+		long[] p = new long[P.length];
+		long[] bnd = new long[Bnd.length];
+		for(int i = 0; i < n.length; i++){
+			n[i] = N[i] | o.N[i];
+			p[i] = P[i] & o.P[i];
+			bnd[i] = (Bnd[i] | o.Bnd[i]) & ~n[i] & ~p[i];
+		}
+		return new BitOrthopair(universe, n, p, bnd);
+	}
+
+	/**
+	 * Checks whether the meet of this orthopair and the given one is empty,
+	 * without building the meet
+	 * @param o, an orthopair
+	 * @return whether the upper regions are disjoint
+	 */
+	public boolean isDisjoint(BitOrthopair o){
+		for(int i = 0; i < P.length; i++)
+			if(((P[i] | Bnd[i]) & (o.P[i] | o.Bnd[i])) != 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Checks whether this orthopair overlaps the given one, i.e. the upper region of this
+	 * orthopair meets the lower region of o or the lower region of this orthopair meets the
+	 * boundary of o. This is the condition checked by {@link Orthopartition} when overlaps are not admitted
+	 * @param o, an orthopair
+	 * @return whether the orthopairs overlap
+	 */
+	public boolean overlaps(BitOrthopair o){
+		for(int i = 0; i < P.length; i++)
+			if((((P[i] | Bnd[i]) & o.P[i]) | (P[i] & o.Bnd[i])) != 0)
+				return true;
+		return false;
+	}
+
+	/**
+	 * Compute the boundary-based uncertainty measure
+	 * @return the value of the boundary-based measure
+	 */
+	public double entropy(){
+		return ((double) Bitsets.cardinality(Bnd))/this.getUniverseSize();
+	}
+
+	/**
+	 * Compute the size of the lower region (i.e. P)
+	 * @return the size of the lower region
+	 */
+	public int getLowerSize(){
+		return Bitsets.cardinality(P);
+	}
+
+	/**
+	 * Compute the size of the boundary region
+	 * @return the size of the boundary
+	 */
+	public int getBoundarySize(){
+		return Bitsets.cardinality(Bnd);
+	}
+
+	/**
+	 * Compute the size of the upper region (i.e. P union Bnd)
+	 * @return the size of the upper region
+	 */
+	public int getUpperSize(){
+		return Bitsets.orCardinality(P, Bnd);
+	}
+
+	/**
+	 * Checks if the orthopair is empty (e.g. N == U)
+	 * @return whether the orthopair is empty
+	 */
+	public boolean isEmpty(){
+		return Bitsets.isEmpty(P) && Bitsets.isEmpty(Bnd);
+	}
+
+	/**
+	 * Checks whether this orthopair and the given one have the same regions over the same indexed universe
+	 * @param o, an orthopair
+	 * @return whether P, Bnd and N coincide
+	 */
+	public boolean sameRegions(BitOrthopair o){
+		return universe == o.universe && Arrays.equals(P, o.P)
+				&& Arrays.equals(Bnd, o.Bnd) && Arrays.equals(N, o.N);
+	}
+
+	public String toString(){
+		return universe.toSet(P).toString() + "\n" + universe.toSet(Bnd).toString() + "\n" + universe.toSet(N).toString();
+	}
+}
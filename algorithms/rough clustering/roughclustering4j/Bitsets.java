@@ -0,0 +1,99 @@
+package roughclustering;
+
+/**
+ * Word-parallel operations on bitsets represented as arrays of 64-bit words.
+ * Bits beyond the size of the universe are always kept to zero
+ * @author Andrea Campagner
+ *
+ */
+final class Bitsets {
+
+	private Bitsets(){}
+
+	static int words(int size){
+		return (size + 63) >>> 6;
+	}
+
+	static void set(long[] bits, int i){
+		bits[i >>> 6] |= 1L << i;
+	}
+
+	static void clear(long[] bits, int i){
+		bits[i >>> 6] &= ~(1L << i);
+	}
+
+	static boolean get(long[] bits, int i){
+		return (bits[i >>> 6] & (1L << i)) != 0;
+	}
+
+	static int cardinality(long[] bits){
+		int result = 0;
+		for(long w : bits)
+			result += Long.bitCount(w);
+		return result;
+	}
+
+	static boolean isEmpty(long[] bits){
+		for(long w : bits)
+			if(w != 0)
+				return false;
+		return true;
+	}
+
+	static boolean intersects(long[] a, long[] b){
+		for(int i = 0; i < a.length; i++)
+			if((a[i] & b[i]) != 0)
+				return true;
+		return false;
+	}
+
+	static int andCardinality(long[] a, long[] b){
+		int result = 0;
+		for(int i = 0; i < a.length; i++)
+			result += Long.bitCount(a[i] & b[i]);
+		return result;
+	}
+
+	static int orCardinality(long[] a, long[] b){
+		int result = 0;
+		for(int i = 0; i < a.length; i++)
+			result += Long.bitCount(a[i] | b[i]);
+		return result;
+	}
+
+	/**
+	 * Checks whether a is a subset of b
+	 */
+	static boolean isSubset(long[] a, long[] b){
+		for(int i = 0; i < a.length; i++)
+			if((a[i] & ~b[i]) != 0)
+				return false;
+		return true;
+	}
+
+	static int nextSetBit(long[] bits, int from){
+		int w = from >>> 6;
+		if(w >= bits.length)
+			return -1;
+		long word = bits[w] & (-1L << from);
+		while(true){
+			if(word != 0)
+				return (w << 6) + Long.numberOfTrailingZeros(word);
+			if(++w == bits.length)
+				return -1;
+			word = bits[w];
+		}
+	}
+
+	/**
+	 * Mask of the valid bits for a universe of the given size
+	 */
+	static long[] full(int size){
+		long[] bits = new long[words(size)];
+		for(int i = 0; i < bits.length; i++)
+			bits[i] = -1L;
+		if((size & 63) != 0)
+			bits[bits.length - 1] = (1L << size) - 1;
+		return bits;
+	}
+}
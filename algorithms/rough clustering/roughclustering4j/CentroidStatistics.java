@@ -0,0 +1,240 @@
+package roughclustering;
+
+import java.util.Arrays;
+
+import weka.core.Instances;
+
+/**
+ * Implements the sufficient statistics of the lower and upper regions of the clusters of a rough
+ * assignment, from which the cluster representatives are computed without the instances:
+ * the (compensated) sums of the numeric attributes and the value counts of the discrete attributes.
+ * The upper region of a cluster includes its lower region. The sums are accumulated in the order of
+ * the instances with the compensated summation of DoubleStream.average, so the means are the same of
+ * a stream over the instances of the region. The statistics are primitive arrays allocated once and
+ * reset in place by clear, their memory is bounded by k times the number of attributes (and values)
+ * @author Andrea Campagner
+ *
+ */
+public class CentroidStatistics {
+	private final int k;
+	private final int numAttributes;
+	private final boolean[] numeric;
+	private final long[] lowerSize;
+	private final long[] upperSize;
+	//sums, compensations and simple sums of the numeric attributes, indexed by j*numAttributes + a
+	private final double[] lowerSum;
+	private final double[] lowerCompensation;
+	private final double[] lowerSimpleSum;
+	private final double[] upperSum;
+	private final double[] upperCompensation;
+	private final double[] upperSimpleSum;
+	private final long[][][] lowerCounts;
+	private final long[][][] upperCounts;
+	private final long[][] lowerMissing;
+	private final long[][] upperMissing;
+	private int numClusters = 0;
+	private long boundary = 0;
+
+	/**
+	 * Construct empty statistics for the given number of clusters
+	 * @param header, dataset (only its attributes are used)
+	 * @param k, number of clusters
+	 */
+	public CentroidStatistics(Instances header, int k){
+		this.k = k;
+		numAttributes = header.numAttributes();
+		numeric = new boolean[numAttributes];
+		lowerSize = new long[k];
+		upperSize = new long[k];
+		lowerSum = new double[k*numAttributes];
+		lowerCompensation = new double[k*numAttributes];
+		lowerSimpleSum = new double[k*numAttributes];
+		upperSum = new double[k*numAttributes];
+		upperCompensation = new double[k*numAttributes];
+		upperSimpleSum = new double[k*numAttributes];
+		lowerCounts = new long[k][numAttributes][];
+		upperCounts = new long[k][numAttributes][];
+		lowerMissing = new long[k][numAttributes];
+		upperMissing = new long[k][numAttributes];
+		for(int a = 0; a < numAttributes; a++)
+			numeric[a] = header.attribute(a).isNumeric();
+		for(int j = 0; j < k; j++)
+			for(int a = 0; a < numAttributes; a++)
+				if(!numeric[a]){
+					lowerCounts[j][a] = new long[header.attribute(a).numValues()];
+					upperCounts[j][a] = new long[header.attribute(a).numValues()];
+				}
+		clear();
+	}
+
+	/**
+	 * Remove all the instances
+	 */
+	public void clear(){
+		Arrays.fill(lowerSum, 0);
+		Arrays.fill(lowerCompensation, 0);
+		Arrays.fill(lowerSimpleSum, 0);
+		Arrays.fill(upperSum, 0);
+		Arrays.fill(upperCompensation, 0);
+		Arrays.fill(upperSimpleSum, 0);
+		for(int j = 0; j < k; j++){
+			lowerSize[j] = 0;
+			upperSize[j] = 0;
+			for(int a = 0; a < numAttributes; a++)
+				if(!numeric[a]){
+					Arrays.fill(lowerCounts[j][a], 0);
+					Arrays.fill(upperCounts[j][a], 0);
+					lowerMissing[j][a] = 0;
+					upperMissing[j][a] = 0;
+				}
+		}
+		numClusters = 0;
+		boundary = 0;
+	}
+
+	/**
+	 * Add an instance to the upper regions of the given clusters, and to the lower region if it
+	 * belongs to a single cluster
+	 * @param x, values of the instance (discrete values as indices, missing values as NaN)
+	 * @param clusters, indices of the clusters of the instance
+	 * @param count, number of clusters of the instance
+	 */
+	public void add(double[] x, int[] clusters, int count){
+		boolean lower = count == 1;
+		if(count > 1)
+			boundary++;
+		for(int c = 0; c < count; c++){
+			int j = clusters[c];
+			numClusters = Math.max(numClusters, j + 1);
+			upperSize[j]++;
+			if(lower)
+				lowerSize[j]++;
+			for(int a = 0; a < numAttributes; a++){
+				double v = x[a];
+				if(numeric[a]){
+					accept(upperSum, upperCompensation, upperSimpleSum, j*numAttributes + a, v);
+					if(lower)
+						accept(lowerSum, lowerCompensation, lowerSimpleSum, j*numAttributes + a, v);
+				}else if(Double.isNaN(v)){
+					upperMissing[j][a]++;
+					if(lower)
+						lowerMissing[j][a]++;
+				}else{
+					upperCounts[j][a][(int) v]++;
+					if(lower)
+						lowerCounts[j][a][(int) v]++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add a value to a compensated sum, as DoubleSummaryStatistics.accept
+	 */
+	private static void accept(double[] sum, double[] compensation, double[] simpleSum, int i, double v){
+		simpleSum[i] += v;
+		double tmp = v - compensation[i];
+		double velvel = sum[i] + tmp;
+		compensation[i] = (velvel - sum[i]) - tmp;
+		sum[i] = velvel;
+	}
+
+	/**
+	 * Compute the mean of a compensated sum, as DoubleSummaryStatistics.getAverage: the simple sum is
+	 * used if the compensated sum is NaN because of infinite values of the same sign
+	 */
+	private static double average(double[] sum, double[] compensation, double[] simpleSum, int i, long count){
+		if(count == 0)
+			return 0.0;
+		double result = sum[i] - compensation[i];
+		if(Double.isNaN(result) && Double.isInfinite(simpleSum[i]))
+			result = simpleSum[i];
+		return result/count;
+	}
+
+	/**
+	 * Get the number of orthopairs of the assignment: the largest index of a cluster with some
+	 * instance, plus one
+	 * @return the number of clusters
+	 */
+	public int numClusters(){
+		return numClusters;
+	}
+
+	public long lowerSize(int j){
+		return lowerSize[j];
+	}
+
+	public long upperSize(int j){
+		return upperSize[j];
+	}
+
+	/**
+	 * Get the number of instances in some boundary
+	 * @return the number of instances assigned to more than one cluster
+	 */
+	public long boundary(){
+		return boundary;
+	}
+
+	/**
+	 * Get the number of memberships of the instances
+	 * @return the sum of the sizes of the upper regions
+	 */
+	public long memberships(){
+		long result = 0;
+		for(long s : upperSize)
+			result += s;
+		return result;
+	}
+
+	/**
+	 * Compute the mean of a numeric attribute in the lower region of a cluster
+	 * @param j, index of the cluster
+	 * @param a, index of the attribute
+	 * @return the mean, NaN if some value is missing
+	 */
+	public double lowerMean(int j, int a){
+		return average(lowerSum, lowerCompensation, lowerSimpleSum, j*numAttributes + a, lowerSize[j]);
+	}
+
+	/**
+	 * Compute the mean of a numeric attribute in the upper region of a cluster
+	 * @param j, index of the cluster
+	 * @param a, index of the attribute
+	 * @return the mean, NaN if some value is missing
+	 */
+	public double upperMean(int j, int a){
+		return average(upperSum, upperCompensation, upperSimpleSum, j*numAttributes + a, upperSize[j]);
+	}
+
+	/**
+	 * Get the value counts of a discrete attribute in the lower region of a cluster, the array is
+	 * shared and must not be modified
+	 * @param j, index of the cluster
+	 * @param a, index of the attribute
+	 * @return the number of instances with each value
+	 */
+	public long[] lowerCounts(int j, int a){
+		return lowerCounts[j][a];
+	}
+
+	/**
+	 * Get the value counts of a discrete attribute in the upper region of a cluster, the array is
+	 * shared and must not be modified
+	 * @param j, index of the cluster
+	 * @param a, index of the attribute
+	 * @return the number of instances with each value
+	 */
+	public long[] upperCounts(int j, int a){
+		return upperCounts[j][a];
+	}
+
+	public long lowerMissing(int j, int a){
+		return lowerMissing[j][a];
+	}
+
+	public long upperMissing(int j, int a){
+		return upperMissing[j][a];
+	}
+}
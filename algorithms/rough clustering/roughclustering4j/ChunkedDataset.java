@@ -0,0 +1,211 @@
+package roughclustering;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import weka.core.Instances;
+
+/**
+ * Implements a dataset read in chunks of rows from a file in the binary columnar format written by
+ * {@link ColumnarFile}, for datasets that do not fit in memory.
+ * Only the header is kept in memory: each chunk is read from the columns of the file into a buffer of
+ * chunkSize rows, so the memory used to scan the dataset is bounded by the chunk size and the number
+ * of attributes. Chunks can be read concurrently, each reader using its own {@link Chunk}
+ * @author Andrea Campagner
+ *
+ */
+public class ChunkedDataset implements AutoCloseable {
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final Instances header;
+	private final int numInstances;
+	private final int numAttributes;
+	private final boolean[] numeric;
+	private final long[] offsets;
+	private final int chunkSize;
+
+	/**
+	 * Open the given file
+	 * @param file, a file written by ColumnarFile
+	 * @param chunkSize, number of rows of a chunk
+	 * @throws Exception - the file is not in the columnar format, or it cannot be read
+	 */
+	public ChunkedDataset(File file, int chunkSize) throws Exception{
+		if(chunkSize <= 0)
+			throw new Exception("The chunk size must be positive");
+		this.file = file;
+		this.chunkSize = chunkSize;
+		raf = new RandomAccessFile(file, "r");
+		channel = raf.getChannel();
+		try{
+			ColumnarFile.Layout layout = ColumnarFile.readLayout(channel, file);
+			header = layout.header;
+			numInstances = layout.numInstances;
+			offsets = layout.offsets;
+		}catch(Exception e){
+			raf.close();
+			throw e;
+		}
+		numAttributes = header.numAttributes();
+		numeric = new boolean[numAttributes];
+		for(int a = 0; a < numAttributes; a++)
+			numeric[a] = header.attribute(a).isNumeric();
+	}
+
+	/**
+	 * A buffer holding the rows of a chunk, with the encoding of Instance.value (discrete values
+	 * as indices, missing values as NaN)
+	 */
+	public final class Chunk {
+		private final double[][] rows;
+		private final ByteBuffer buffer;
+		private int from = 0;
+		private int size = 0;
+
+		private Chunk(){
+			rows = new double[chunkSize][numAttributes];
+			buffer = ByteBuffer.allocate(8*chunkSize).order(ColumnarFile.ORDER);
+		}
+
+		/**
+		 * Get the index in the dataset of the first row of the chunk
+		 * @return the index of the first row
+		 */
+		public int getFrom(){
+			return from;
+		}
+
+		/**
+		 * Get the number of rows read in the chunk
+		 * @return the number of rows
+		 */
+		public int size(){
+			return size;
+		}
+
+		/**
+		 * Get the values of a row of the chunk, the array is reused by the following reads
+		 * @param i, index of the row in the chunk
+		 * @return the values of the row
+		 */
+		public double[] row(int i){
+			return rows[i];
+		}
+
+		double[][] rows(){
+			return rows;
+		}
+	}
+
+	/**
+	 * Allocate a buffer for the chunks of this dataset
+	 * @return the buffer
+	 */
+	public Chunk newChunk(){
+		return new Chunk();
+	}
+
+	/**
+	 * Compute the number of chunks of the dataset
+	 * @return the number of chunks
+	 */
+	public int numChunks(){
+		return (int) ((numInstances + (long) chunkSize - 1)/chunkSize);
+	}
+
+	/**
+	 * Read a chunk of rows
+	 * @param c, index of the chunk
+	 * @param chunk, buffer of the rows, overwritten
+	 * @throws IOException - the file cannot be read
+	 */
+	public void read(int c, Chunk chunk) throws IOException{
+		chunk.from = c*chunkSize;
+		chunk.size = Math.min(chunkSize, numInstances - chunk.from);
+		for(int a = 0; a < numAttributes; a++){
+			int width = numeric[a]? 8 : 4;
+			ByteBuffer b = chunk.buffer;
+			b.clear().limit(chunk.size*width);
+			readFully(b, offsets[a] + ((long) chunk.from)*width);
+			b.flip();
+			for(int i = 0; i < chunk.size; i++)
+				if(numeric[a])
+					chunk.rows[i][a] = b.getDouble();
+				else{
+					int v = b.getInt();
+					chunk.rows[i][a] = (v < 0)? Double.NaN : v;
+				}
+		}
+	}
+
+	/**
+	 * Read the values of a single row
+	 * @param row, index of the row
+	 * @return the values of the row
+	 * @throws IOException - the file cannot be read
+	 */
+	public double[] row(int row) throws IOException{
+		double[] result = new double[numAttributes];
+		ByteBuffer b = ByteBuffer.allocate(8).order(ColumnarFile.ORDER);
+		for(int a = 0; a < numAttributes; a++){
+			int width = numeric[a]? 8 : 4;
+			b.clear().limit(width);
+			readFully(b, offsets[a] + ((long) row)*width);
+			b.flip();
+			if(numeric[a])
+				result[a] = b.getDouble();
+			else{
+				int v = b.getInt();
+				result[a] = (v < 0)? Double.NaN : v;
+			}
+		}
+		return result;
+	}
+
+	private void readFully(ByteBuffer b, long position) throws IOException{
+		while(b.hasRemaining()){
+			int read = channel.read(b, position);
+			if(read < 0)
+				throw new IOException("Unexpected end of file: " + file);
+			position += read;
+		}
+	}
+
+	public File getFile(){
+		return file;
+	}
+
+	/**
+	 * Get an empty dataset with the attributes of this dataset, shared and not to be modified
+	 * @return the header
+	 */
+	public Instances getHeader(){
+		return header;
+	}
+
+	public int getChunkSize(){
+		return chunkSize;
+	}
+
+	public int numInstances(){
+		return numInstances;
+	}
+
+	public int numAttributes(){
+		return numAttributes;
+	}
+
+	public boolean isNumeric(int a){
+		return numeric[a];
+	}
+
+	@Override
+	public void close() throws IOException{
+		raf.close();
+	}
+}
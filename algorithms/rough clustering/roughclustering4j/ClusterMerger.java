@@ -0,0 +1,228 @@
+package roughclustering;
+
+import java.util.Arrays;
+
+/**
+ * Implements the merge loop of the Rough Refinement clusterer on integer sets.
+ * The merges proceed in rounds: in each round every cluster, in list order, is merged with the
+ * first cluster following the list order such that the first contains the second or the overlap
+ * |A intersect B|/(|A union B| - |A intersect B|) reaches the threshold. Clusters merged in a round
+ * are removed, and the merged clusters are appended to the list at the end of the round.
+ * The overlaps are counted from the clusters of each element, and since two clusters that were
+ * not merged in a round will not be merged in the following ones, each round only evaluates the
+ * pairs involving a cluster created in the previous round. Merged clusters are tracked with a
+ * union-find structure over the cluster identifiers, which increase in list order
+ * @author Andrea Campagner
+ *
+ */
+final class ClusterMerger {
+
+	private ClusterMerger(){
+	}
+
+	/**
+	 * Merge the given clusters
+	 * @param n, size of the universe
+	 * @param sets, the clusters, as arrays of distinct elements in increasing order
+	 * @param threshold, threshold of the overlap
+	 * @return the merged clusters in list order, as arrays of elements in increasing order
+	 */
+	static int[][] merge(int n, int[][] sets, double threshold){
+		int m = sets.length;
+		if(m < 2)
+			return sets.clone();
+		if(threshold <= 0){
+			//every pair is merged, until a single cluster is left
+			boolean[] union = new boolean[n];
+			for(int[] s : sets)
+				for(int x : s)
+					union[x] = true;
+			IntList all = new IntList();
+			for(int x = 0; x < n; x++)
+				if(union[x])
+					all.add(x);
+			return new int[][]{all.toArray()};
+		}
+
+		//Clusters of each element
+		int[] start = new int[n + 1];
+		for(int[] s : sets)
+			for(int x : s)
+				start[x + 1]++;
+		for(int x = 0; x < n; x++)
+			start[x + 1] += start[x];
+		int[] next = start.clone();
+		int[] containing = new int[start[n]];
+		for(int c = 0; c < m; c++)
+			for(int x : sets[c])
+				containing[next[x]++] = c;
+
+		//Each merge creates a new identifier, at most m - 1 merges
+		int capacity = 2*m - 1;
+		int[][] members = new int[capacity][];
+		int[] parent = new int[capacity];
+		boolean[] alive = new boolean[capacity];
+		boolean[] fresh = new boolean[capacity];
+		boolean[] erased = new boolean[capacity];
+		for(int c = 0; c < capacity; c++)
+			parent[c] = c;
+		IntList created = new IntList();
+		for(int c = 0; c < m; c++){
+			members[c] = sets[c];
+			alive[c] = true;
+			created.add(c);
+		}
+		int ids = m;
+
+		int[][] neighbours = new int[capacity][];
+		int[][] overlaps = new int[capacity][];
+		IntList[] reverse = new IntList[capacity];
+		int[] seen = new int[capacity];
+		int[] count = new int[capacity];
+		Arrays.fill(seen, -1);
+		IntList touched = new IntList();
+		IntList merges = new IntList();
+		while(created.size() > 0){
+			//Overlaps of the clusters created in the previous round with the other clusters
+			IntList outer = new IntList();
+			for(int e = 0; e < created.size(); e++){
+				int f = created.get(e);
+				fresh[f] = true;
+				outer.add(f);
+			}
+			for(int e = 0; e < created.size(); e++){
+				int f = created.get(e);
+				for(int x : members[f])
+					for(int g = start[x]; g < start[x + 1]; g++){
+						int r = find(parent, containing[g]);
+						if(r == f || seen[r] == x)
+							continue;
+						if(count[r] == 0)
+							touched.add(r);
+						seen[r] = x;
+						count[r]++;
+					}
+				int[] nb = touched.toArray();
+				Arrays.sort(nb);
+				int[] ov = new int[nb.length];
+				for(int t = 0; t < nb.length; t++){
+					ov[t] = count[nb[t]];
+					count[nb[t]] = 0;
+					seen[nb[t]] = -1;
+					//the older clusters only need to evaluate the new ones
+					if(!fresh[nb[t]]){
+						if(reverse[nb[t]] == null){
+							reverse[nb[t]] = new IntList();
+							outer.add(nb[t]);
+						}
+						reverse[nb[t]].add(f);
+						reverse[nb[t]].add(ov[t]);
+					}
+				}
+				touched.clear();
+				neighbours[f] = nb;
+				overlaps[f] = ov;
+			}
+
+			//Evaluate the candidate pairs in list order
+			int[] order = outer.toArray();
+			Arrays.sort(order);
+			for(int i : order){
+				if(erased[i])
+					continue;
+				if(fresh[i]){
+					for(int t = 0; t < neighbours[i].length; t++){
+						int j = neighbours[i][t];
+						if(!erased[j] && merges(members[i].length, members[j].length, overlaps[i][t], threshold)){
+							erased[i] = erased[j] = true;
+							merges.add(i);
+							merges.add(j);
+							break;
+						}
+					}
+				}else{
+					IntList r = reverse[i];
+					for(int t = 0; t < r.size(); t += 2){
+						int j = r.get(t);
+						if(!erased[j] && merges(members[i].length, members[j].length, r.get(t + 1), threshold)){
+							erased[i] = erased[j] = true;
+							merges.add(i);
+							merges.add(j);
+							break;
+						}
+					}
+				}
+			}
+			for(int i : order){
+				fresh[i] = false;
+				reverse[i] = null;
+				neighbours[i] = null;
+				overlaps[i] = null;
+			}
+
+			//Append the merged clusters
+			created.clear();
+			for(int e = 0; e < merges.size(); e += 2){
+				int i = merges.get(e), j = merges.get(e + 1);
+				members[ids] = union(members[i], members[j]);
+				alive[ids] = true;
+				parent[i] = parent[j] = ids;
+				alive[i] = alive[j] = false;
+				erased[i] = erased[j] = false;
+				members[i] = members[j] = null;
+				created.add(ids++);
+			}
+			merges.clear();
+		}
+
+		IntList result = new IntList();
+		for(int c = 0; c < ids; c++)
+			if(alive[c])
+				result.add(c);
+		int[][] clusters = new int[result.size()][];
+		for(int t = 0; t < clusters.length; t++)
+			clusters[t] = members[result.get(t)];
+		return clusters;
+	}
+
+	/**
+	 * Checks whether cluster a absorbs cluster b: a contains b or their overlap reaches the threshold
+	 */
+	private static boolean merges(int sizeA, int sizeB, int meet, double threshold){
+		int join = sizeA + sizeB - meet;
+		double d = ((double) meet)/(join - meet);
+		return meet == sizeB || d >= threshold;
+	}
+
+	private static int find(int[] parent, int c){
+		int root = c;
+		while(parent[root] != root)
+			root = parent[root];
+		while(parent[c] != root){
+			int t = parent[c];
+			parent[c] = root;
+			c = t;
+		}
+		return root;
+	}
+
+	private static int[] union(int[] a, int[] b){
+		int[] result = new int[a.length + b.length];
+		int i = 0, j = 0, k = 0;
+		while(i < a.length && j < b.length){
+			if(a[i] < b[j])
+				result[k++] = a[i++];
+			else if(a[i] > b[j])
+				result[k++] = b[j++];
+			else{
+				result[k++] = a[i++];
+				j++;
+			}
+		}
+		while(i < a.length)
+			result[k++] = a[i++];
+		while(j < b.length)
+			result[k++] = b[j++];
+		return Arrays.copyOf(result, k);
+	}
+}
@@ -0,0 +1,26 @@
+package roughclustering;
+
+/**
+ * Implements a listener of the training of a rough clusterer, notified at the end of each
+ * iteration and of each restart. Restarts may run concurrently, so a listener attached to a
+ * parallel clusterer must be thread-safe.
+ * The metrics are only collected when some listener is attached to the clusterer
+ * @author Andrea Campagner
+ *
+ */
+public interface ClustererListener {
+
+	/**
+	 * Called at the end of each iteration
+	 * @param metrics, timings and statistics of the iteration
+	 */
+	default void iterationCompleted(IterationMetrics metrics){
+	}
+
+	/**
+	 * Called at the end of each restart
+	 * @param metrics, timings and statistics of the restart
+	 */
+	default void restartCompleted(RestartMetrics metrics){
+	}
+}
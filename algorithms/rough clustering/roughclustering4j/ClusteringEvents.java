@@ -0,0 +1,149 @@
+package roughclustering;
+
+import java.util.ArrayList;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Implements the Java Flight Recorder events emitted by the rough clusterers: restarts, iterations,
+ * attribute reweighting, assignments and scoring calls. The elapsed time is the duration of the event.
+ * The events are created and timed around each step, their fields are only computed if the event
+ * is enabled in the running recording (shouldCommit)
+ * @author Andrea Campagner
+ *
+ */
+final class ClusteringEvents {
+	private static final String CATEGORY = "Rough Clustering";
+
+	private ClusteringEvents(){
+	}
+
+	/**
+	 * Compute the number of instances assigned to more than one cluster
+	 * @param clustering, list of the assignments of the instances
+	 * @return the size of the boundary
+	 */
+	static int boundary(ArrayList<ArrayList<Integer>> clustering){
+		int boundary = 0;
+		for(ArrayList<Integer> l : clustering)
+			if(l != null && l.size() > 1)
+				boundary++;
+		return boundary;
+	}
+
+	@Name("roughclustering.Restart")
+	@Label("Restart")
+	@Category(CATEGORY)
+	@Description("A restart of a rough clusterer")
+	static class Restart extends Event {
+		@Label("Clusterer")
+		String clusterer;
+
+		@Label("Restart")
+		int restart;
+
+		@Label("Seed")
+		long seed;
+
+		@Label("Instances")
+		int instances;
+
+		@Label("Clusters")
+		int k;
+
+		@Label("Iterations")
+		int iterations;
+
+		@Label("Boundary")
+		@Description("Number of instances in some boundary of the resulting orthopartition")
+		int boundary;
+
+		@Label("DB-index")
+		double db;
+	}
+
+	@Name("roughclustering.Iteration")
+	@Label("Iteration")
+	@Category(CATEGORY)
+	@Description("An iteration of a rough clusterer")
+	static class Iteration extends Event {
+		@Label("Clusterer")
+		String clusterer;
+
+		@Label("Restart")
+		int restart;
+
+		@Label("Iteration")
+		int iteration;
+
+		@Label("Instances")
+		int instances;
+
+		@Label("Clusters")
+		int k;
+
+		@Label("Boundary")
+		@Description("Number of instances in some boundary")
+		int boundary;
+	}
+
+	@Name("roughclustering.Reweight")
+	@Label("Reweight")
+	@Category(CATEGORY)
+	@Description("Recomputation of the attribute weights from an orthopartition")
+	static class Reweight extends Event {
+		@Label("Clusterer")
+		String clusterer;
+
+		@Label("Instances")
+		int instances;
+
+		@Label("Attributes")
+		int attributes;
+
+		@Label("Clusters")
+		int k;
+	}
+
+	@Name("roughclustering.Assignment")
+	@Label("Assignment")
+	@Category(CATEGORY)
+	@Description("Rough assignment of a set of instances to the cluster representatives")
+	static class Assignment extends Event {
+		@Label("Clusterer")
+		String clusterer;
+
+		@Label("Instances")
+		int instances;
+
+		@Label("Clusters")
+		int k;
+
+		@Label("Boundary")
+		@Description("Number of instances assigned to more than one cluster")
+		int boundary;
+	}
+
+	@Name("roughclustering.Scoring")
+	@Label("Scoring")
+	@Category(CATEGORY)
+	@Description("Assignment of new instances to a trained rough clusterer")
+	static class Scoring extends Event {
+		@Label("Clusterer")
+		String clusterer;
+
+		@Label("Instances")
+		int instances;
+
+		@Label("Clusters")
+		int k;
+
+		@Label("Boundary")
+		@Description("Number of instances assigned to more than one cluster")
+		int boundary;
+	}
+}
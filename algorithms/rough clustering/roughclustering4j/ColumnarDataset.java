@@ -0,0 +1,203 @@
+package roughclustering;
+
+import weka.core.Instances;
+
+/**
+ * Implements a columnar, primitive view of a dataset, built once from an Instances object.
+ * Numeric attributes are stored as double columns, discrete attributes as int columns holding
+ * the index of the value (-1 for missing values), so that the hot loops of the clusterers
+ * do not go through Instance.value and Attribute.isNumeric
+ * @author Andrea Campagner
+ *
+ */
+public class ColumnarDataset implements Dataset {
+	//length of the runs sorted by insertion sort before merging
+	private static final int INSERTION_SIZE = 16;
+	private final Instances data;
+	private final int numInstances;
+	private final int numAttributes;
+	private final boolean[] numeric;
+	private final int[] numValues;
+	private final double[][] numericColumns;
+	private final int[][] nominalColumns;
+	private final NumericColumn[] numericViews;
+	private final NominalColumn[] nominalViews;
+	private final int[][] sortedOrders;
+
+	/**
+	 * Construct the columnar view of the given dataset
+	 * @param data, dataset
+	 */
+	public ColumnarDataset(Instances data){
+		this.data = data;
+		numInstances = data.numInstances();
+		numAttributes = data.numAttributes();
+		numeric = new boolean[numAttributes];
+		numValues = new int[numAttributes];
+		numericColumns = new double[numAttributes][];
+		nominalColumns = new int[numAttributes][];
+		numericViews = new NumericColumn[numAttributes];
+		nominalViews = new NominalColumn[numAttributes];
+		sortedOrders = new int[numAttributes][];
+		for(int a = 0; a < numAttributes; a++){
+			numeric[a] = data.attribute(a).isNumeric();
+			numValues[a] = data.attribute(a).numValues();
+			if(numeric[a]){
+				numericColumns[a] = new double[numInstances];
+				numericViews[a] = new NumericColumn(numericColumns[a]);
+			}
+			else{
+				nominalColumns[a] = new int[numInstances];
+				nominalViews[a] = new NominalColumn(nominalColumns[a]);
+			}
+		}
+		for(int i = 0; i < numInstances; i++){
+			double[] row = data.get(i).toDoubleArray();
+			for(int a = 0; a < numAttributes; a++){
+				if(numeric[a])
+					numericColumns[a][i] = row[a];
+				else
+					nominalColumns[a][i] = Double.isNaN(row[a])? -1 : (int) row[a];
+			}
+		}
+	}
+
+	@Override
+	public Instances getData(){
+		return data;
+	}
+
+	/**
+	 * Get the dataset itself, whose attributes are those of the view
+	 */
+	@Override
+	public Instances getHeader(){
+		return data;
+	}
+
+	@Override
+	public boolean isViewOf(Instances data){
+		return this.data == data;
+	}
+
+	@Override
+	public int numInstances(){
+		return numInstances;
+	}
+
+	@Override
+	public int numAttributes(){
+		return numAttributes;
+	}
+
+	@Override
+	public boolean isNumeric(int a){
+		return numeric[a];
+	}
+
+	@Override
+	public int numValues(int a){
+		return numValues[a];
+	}
+
+	@Override
+	public NumericColumn numericColumn(int a){
+		return numericViews[a];
+	}
+
+	@Override
+	public NominalColumn nominalColumn(int a){
+		return nominalViews[a];
+	}
+
+	/**
+	 * Get the instances in increasing order of the given numeric attribute, the order is computed
+	 * on first use and shared
+	 */
+	@Override
+	public synchronized int[] sortedOrder(int a){
+		if(sortedOrders[a] == null)
+			sortedOrders[a] = sort(numericViews[a]);
+		return sortedOrders[a];
+	}
+
+	/**
+	 * Sort the indices of a numeric column, equal values are in index order and missing values come last.
+	 * The values are mapped to long keys with the order of Double.compare and sorted together with
+	 * their indices by a stable merge sort on primitive arrays
+	 * @param column, a numeric column
+	 * @return the indices in increasing order of the values
+	 */
+	static int[] sort(NumericColumn column){
+		int n = column.size();
+		long[] keys = new long[n];
+		int[] order = new int[n];
+		for(int i = 0; i < n; i++){
+			keys[i] = key(column.get(i));
+			order[i] = i;
+		}
+		//Sorted runs by insertion sort, then merged bottom-up alternating between the two buffers
+		for(int lo = 0; lo < n; lo += INSERTION_SIZE)
+			insertionSort(keys, order, lo, Math.min(lo + INSERTION_SIZE, n));
+		long[] keyBuffer = new long[n];
+		int[] orderBuffer = new int[n];
+		for(int width = INSERTION_SIZE; width < n; width *= 2){
+			for(int lo = 0; lo < n; lo += 2*width)
+				merge(keys, order, keyBuffer, orderBuffer, lo, Math.min(lo + width, n), Math.min(lo + 2*width, n));
+			long[] k = keys;
+			keys = keyBuffer;
+			keyBuffer = k;
+			int[] o = order;
+			order = orderBuffer;
+			orderBuffer = o;
+		}
+		return order;
+	}
+
+	/**
+	 * Map a value to a long with the same order of Double.compare: -0.0 before 0.0, NaN last
+	 */
+	private static long key(double v){
+		long bits = Double.doubleToLongBits(v);
+		return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+	}
+
+	private static void insertionSort(long[] keys, int[] order, int lo, int hi){
+		for(int i = lo + 1; i < hi; i++){
+			long key = keys[i];
+			int index = order[i];
+			int j = i - 1;
+			for(; j >= lo && keys[j] > key; j--){
+				keys[j + 1] = keys[j];
+				order[j + 1] = order[j];
+			}
+			keys[j + 1] = key;
+			order[j + 1] = index;
+		}
+	}
+
+	/**
+	 * Merge the sorted ranges [lo, mid) and [mid, hi) into the destination, the first range wins ties
+	 */
+	private static void merge(long[] keys, int[] order, long[] keysTo, int[] orderTo, int lo, int mid, int hi){
+		int i = lo, j = mid;
+		for(int p = lo; p < hi; p++){
+			if(j >= hi || (i < mid && keys[i] <= keys[j])){
+				keysTo[p] = keys[i];
+				orderTo[p] = order[i++];
+			}
+			else{
+				keysTo[p] = keys[j];
+				orderTo[p] = order[j++];
+			}
+		}
+	}
+
+	@Override
+	public double value(int row, int a){
+		if(numeric[a])
+			return numericColumns[a][row];
+		int v = nominalColumns[a][row];
+		return (v < 0)? Double.NaN : v;
+	}
+}
@@ -0,0 +1,275 @@
+package roughclustering;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.converters.ArffLoader;
+
+/**
+ * Implements the writer of the binary columnar format read by {@link MappedDataset}.
+ * The file (little-endian) contains a header followed by one column per attribute:
+ * <ul>
+ * <li>magic number, version, number of instances and number of attributes (ints)</li>
+ * <li>relation name, then for each attribute its name, its kind (1 numeric, 0 discrete) and,
+ * for discrete attributes, the number of values and the values; strings are written as the
+ * length of their UTF-8 encoding followed by the bytes</li>
+ * <li>the offset of each column in the file (longs)</li>
+ * <li>the columns, each starting at a multiple of 8 bytes: numeric columns as doubles (NaN for
+ * missing values), discrete columns as ints holding the index of the value (-1 for missing values)</li>
+ * </ul>
+ * The rows are written in chunks, so an ARFF file can be converted without loading it in memory
+ * @author Andrea Campagner
+ *
+ */
+public final class ColumnarFile {
+	static final int MAGIC = 0x52434453;
+	static final int VERSION = 1;
+	static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+	private static final int CHUNK = 8192;
+
+	private ColumnarFile(){
+	}
+
+	/**
+	 * Write the given dataset
+	 * @param data, dataset
+	 * @param file, destination file, overwritten
+	 * @throws Exception - some attribute is neither numeric nor discrete, or the file cannot be written
+	 */
+	public static void write(Instances data, File file) throws Exception{
+		write(new Instances(data, 0), data.numInstances(), data.iterator(), file);
+	}
+
+	/**
+	 * Convert the given ARFF file, which is read twice (to count the instances and to write them)
+	 * without loading it in memory
+	 * @param arff, ARFF file
+	 * @param file, destination file, overwritten
+	 * @throws Exception - some attribute is neither numeric nor discrete, or the files cannot be read or written
+	 */
+	public static void write(File arff, File file) throws Exception{
+		ArffLoader loader = new ArffLoader();
+		loader.setFile(arff);
+		Instances structure = loader.getStructure();
+		int numInstances = 0;
+		while(loader.getNextInstance(structure) != null)
+			numInstances++;
+		ArffLoader rows = new ArffLoader();
+		rows.setFile(arff);
+		Instances header = rows.getStructure();
+		write(header, numInstances, new Iterator<Instance>(){
+			private Instance next = rows.getNextInstance(header);
+
+			@Override
+			public boolean hasNext(){
+				return next != null;
+			}
+
+			@Override
+			public Instance next(){
+				Instance x = next;
+				try{
+					next = rows.getNextInstance(header);
+				}catch(IOException e){
+					throw new IllegalStateException(e);
+				}
+				return x;
+			}
+		}, file);
+	}
+
+	/**
+	 * Write the given instances
+	 * @param header, dataset with the attributes of the instances
+	 * @param numInstances, number of instances
+	 * @param rows, iterator over the instances
+	 * @param file, destination file, overwritten
+	 * @throws Exception
+	 */
+	private static void write(Instances header, int numInstances, Iterator<Instance> rows, File file) throws Exception{
+		int numAttributes = header.numAttributes();
+		for(int a = 0; a < numAttributes; a++)
+			if(!header.attribute(a).isNumeric() && !header.attribute(a).isNominal())
+				throw new Exception("Attribute " + header.attribute(a).name() + " is neither numeric nor discrete");
+
+		//Header
+		ByteBuffer head = ByteBuffer.allocate(headerSize(header)).order(ORDER);
+		head.putInt(MAGIC).putInt(VERSION).putInt(numInstances).putInt(numAttributes);
+		putString(head, header.relationName());
+		for(int a = 0; a < numAttributes; a++){
+			Attribute attribute = header.attribute(a);
+			putString(head, attribute.name());
+			head.put((byte) (attribute.isNumeric()? 1 : 0));
+			if(!attribute.isNumeric()){
+				head.putInt(attribute.numValues());
+				for(int v = 0; v < attribute.numValues(); v++)
+					putString(head, attribute.value(v));
+			}
+		}
+		long[] offsets = new long[numAttributes];
+		long position = align(head.position() + 8L*numAttributes);
+		for(int a = 0; a < numAttributes; a++){
+			offsets[a] = position;
+			position = align(position + ((long) numInstances)*width(header, a));
+		}
+		for(long offset : offsets)
+			head.putLong(offset);
+		head.flip();
+
+		try(RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()){
+			raf.setLength(position);
+			writeFully(channel, head, 0);
+			//Columns, in chunks of rows
+			ByteBuffer[] buffers = new ByteBuffer[numAttributes];
+			for(int a = 0; a < numAttributes; a++)
+				buffers[a] = ByteBuffer.allocate(CHUNK*width(header, a)).order(ORDER);
+			int start = 0;
+			while(start < numInstances){
+				int end = Math.min(start + CHUNK, numInstances);
+				for(int i = start; i < end; i++){
+					if(!rows.hasNext())
+						throw new Exception("Fewer instances than expected");
+					Instance x = rows.next();
+					for(int a = 0; a < numAttributes; a++){
+						double v = x.value(a);
+						if(header.attribute(a).isNumeric())
+							buffers[a].putDouble(v);
+						else
+							buffers[a].putInt(Double.isNaN(v)? -1 : (int) v);
+					}
+				}
+				for(int a = 0; a < numAttributes; a++){
+					buffers[a].flip();
+					writeFully(channel, buffers[a], offsets[a] + ((long) start)*width(header, a));
+					buffers[a].clear();
+				}
+				start = end;
+			}
+		}
+	}
+
+	/**
+	 * The header of a columnar file: the attributes, the number of instances and the offsets of the columns
+	 */
+	static final class Layout {
+		final Instances header;
+		final int numInstances;
+		final long[] offsets;
+
+		private Layout(Instances header, int numInstances, long[] offsets){
+			this.header = header;
+			this.numInstances = numInstances;
+			this.offsets = offsets;
+		}
+	}
+
+	/**
+	 * Read the header of a columnar file and check that the columns are within the file
+	 * @param channel, channel of the file
+	 * @param file, the file
+	 * @return the layout of the file
+	 * @throws Exception - the file is not in the columnar format, or it cannot be read
+	 */
+	static Layout readLayout(FileChannel channel, File file) throws Exception{
+		long size = channel.size();
+		ByteBuffer head = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, Integer.MAX_VALUE))
+				.order(ORDER);
+		if(size < 16 || head.getInt() != MAGIC)
+			throw new Exception("Not a columnar dataset file: " + file);
+		if(head.getInt() != VERSION)
+			throw new Exception("Unsupported columnar dataset version: " + file);
+		int numInstances = head.getInt();
+		int numAttributes = head.getInt();
+
+		//Attributes
+		String relation = getString(head);
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		for(int a = 0; a < numAttributes; a++){
+			String name = getString(head);
+			if(head.get() == 1)
+				attributes.add(new Attribute(name));
+			else{
+				int numValues = head.getInt();
+				ArrayList<String> values = new ArrayList<String>();
+				for(int v = 0; v < numValues; v++)
+					values.add(getString(head));
+				attributes.add(new Attribute(name, values));
+			}
+		}
+		Instances header = new Instances(relation, attributes, 0);
+
+		//Columns
+		long[] offsets = new long[numAttributes];
+		for(int a = 0; a < numAttributes; a++){
+			offsets[a] = head.getLong();
+			if(offsets[a] + ((long) numInstances)*width(header, a) > size)
+				throw new Exception("Truncated columnar dataset file: " + file);
+		}
+		return new Layout(header, numInstances, offsets);
+	}
+
+	/**
+	 * Compute the size of the header, up to the column offsets included
+	 */
+	private static int headerSize(Instances header){
+		long size = 16 + stringSize(header.relationName());
+		for(int a = 0; a < header.numAttributes(); a++){
+			Attribute attribute = header.attribute(a);
+			size += stringSize(attribute.name()) + 1;
+			if(!attribute.isNumeric()){
+				size += 4;
+				for(int v = 0; v < attribute.numValues(); v++)
+					size += stringSize(attribute.value(v));
+			}
+			size += 8;
+		}
+		return (int) size;
+	}
+
+	/**
+	 * Compute the number of bytes of a value of the given attribute
+	 */
+	static int width(Instances header, int a){
+		return header.attribute(a).isNumeric()? 8 : 4;
+	}
+
+	static long align(long position){
+		return (position + 7) & ~7L;
+	}
+
+	private static int stringSize(String s){
+		return 4 + s.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	private static void putString(ByteBuffer b, String s){
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		b.putInt(bytes.length);
+		b.put(bytes);
+	}
+
+	/**
+	 * Read a string written by putString
+	 * @param b, buffer positioned at the string
+	 * @return the string
+	 */
+	static String getString(ByteBuffer b){
+		byte[] bytes = new byte[b.getInt()];
+		b.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer b, long position) throws IOException{
+		while(b.hasRemaining())
+			position += channel.write(b, position);
+	}
+}
@@ -0,0 +1,94 @@
+package roughclustering;
+
+import weka.core.Instances;
+
+/**
+ * Implements the columnar, primitive view of a dataset consumed by the clusterers.
+ * Numeric attributes are exposed as double columns, discrete attributes as int columns holding
+ * the index of the value (-1 for missing values)
+ * @author Andrea Campagner
+ *
+ */
+public interface Dataset {
+
+	/**
+	 * Get the dataset as Weka instances, which may be materialized on first use
+	 * @return the instances
+	 */
+	Instances getData();
+
+	/**
+	 * Get a dataset with the attributes of this dataset, used as the dataset of the cluster
+	 * representatives (its instances are not significant)
+	 * @return the header
+	 */
+	Instances getHeader();
+
+	/**
+	 * Checks whether this is the view of the given instances, without materializing them
+	 * @param data, dataset
+	 * @return whether the instances of this dataset are the given ones
+	 */
+	boolean isViewOf(Instances data);
+
+	int numInstances();
+
+	int numAttributes();
+
+	boolean isNumeric(int a);
+
+	/**
+	 * Compute the number of values of the given discrete attribute
+	 * @param a, index of the attribute
+	 * @return the number of values, 0 for numeric attributes
+	 */
+	int numValues(int a);
+
+	/**
+	 * Get the column of the given numeric attribute, read in place from the storage of the dataset
+	 * @param a, index of the attribute
+	 * @return the column, null if the attribute is discrete
+	 */
+	NumericColumn numericColumn(int a);
+
+	/**
+	 * Get the column of the given discrete attribute, read in place from the storage of the dataset
+	 * @param a, index of the attribute
+	 * @return the column of value indices, null if the attribute is numeric
+	 */
+	NominalColumn nominalColumn(int a);
+
+	/**
+	 * Get the instances in increasing order of the given numeric attribute, instances with equal
+	 * values are in dataset order and missing values come last. The array is shared and must not be modified
+	 * @param a, index of the attribute
+	 * @return the indices of the instances in sorted order
+	 */
+	int[] sortedOrder(int a);
+
+	/**
+	 * Get the value of the given attribute for the given instance, with the same
+	 * encoding of Instance.value (discrete values as indices, missing values as NaN)
+	 * @param row, index of the instance
+	 * @param a, index of the attribute
+	 * @return the value
+	 */
+	default double value(int row, int a){
+		if(isNumeric(a))
+			return numericColumn(a).get(row);
+		int v = nominalColumn(a).get(row);
+		return (v < 0)? Double.NaN : v;
+	}
+
+	/**
+	 * Copy the values of the given instance
+	 * @param row, index of the instance
+	 * @return the values of the instance
+	 */
+	default double[] row(int row){
+		double[] result = new double[numAttributes()];
+		for(int a = 0; a < result.length; a++)
+			result[a] = value(row, a);
+		return result;
+	}
+}
@@ -0,0 +1,381 @@
+package roughclustering;
+
+import java.io.IOException;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Implements the weighted mixed-type distance used by the rough clusterers.
+ * The per-attribute statistics (kind, minimum and range of the numeric attributes) are
+ * computed once for a dataset, so that a distance evaluation costs O(d) instead of
+ * rescanning the dataset for every numeric attribute.
+ * Distances between instances of the dataset and cluster representatives can be computed
+ * directly on the columnar view of the dataset.
+ * A kernel for a stream of instances has no dataset, its ranges are extended as instances arrive.
+ * A kernel for a chunked dataset has no columnar view, its ranges are computed scanning the chunks
+ * @author Andrea Campagner
+ *
+ */
+public class DistanceKernel {
+	private final Dataset columns;
+	private final int numAttributes;
+	private final boolean[] numeric;
+	private final NumericColumn[] numericColumns;
+	private final NominalColumn[] nominalColumns;
+	private final double[] min;
+	private final double[] max;
+	private final double[] range;
+	//divisor of the numeric differences: the range, or infinity for the attributes with a single
+	//observed value in a kernel built with empty()
+	private final double[] scale;
+	//whether the ranges are extended by widen()
+	private final boolean widening;
+	private double[] weights;
+
+	/**
+	 * Construct the distance kernel of the given dataset
+	 * @param data, dataset
+	 */
+	public DistanceKernel(Instances data){
+		this(new ColumnarDataset(data), null);
+	}
+
+	/**
+	 * Construct the distance kernel of the given dataset
+	 * @param data, dataset
+	 * @param weights, attribute weights (the array is shared, not copied)
+	 */
+	public DistanceKernel(Instances data, double[] weights){
+		this(new ColumnarDataset(data), weights);
+	}
+
+	/**
+	 * Construct the distance kernel of the given columnar dataset
+	 * @param columns, columnar dataset
+	 */
+	public DistanceKernel(Dataset columns){
+		this(columns, null);
+	}
+
+	/**
+	 * Construct the distance kernel of the given columnar dataset
+	 * @param columns, columnar dataset
+	 * @param weights, attribute weights (the array is shared, not copied)
+	 */
+	public DistanceKernel(Dataset columns, double[] weights){
+		this.columns = columns;
+		this.weights = weights;
+		numAttributes = columns.numAttributes();
+		numeric = new boolean[numAttributes];
+		numericColumns = new NumericColumn[numAttributes];
+		nominalColumns = new NominalColumn[numAttributes];
+		min = new double[numAttributes];
+		max = new double[numAttributes];
+		range = new double[numAttributes];
+		scale = range;
+		widening = false;
+		for(int a = 0; a < numAttributes; a++){
+			numeric[a] = columns.isNumeric(a);
+			numericColumns[a] = columns.numericColumn(a);
+			nominalColumns[a] = columns.nominalColumn(a);
+			if(!numeric[a])
+				continue;
+			//Same values as attributeStats(a).numericStats, missing values are skipped
+			double mn = Double.NaN, mx = Double.NaN;
+			for(int i = 0; i < numericColumns[a].size(); i++){
+				double v = numericColumns[a].get(i);
+				if(Double.isNaN(v))
+					continue;
+				if(Double.isNaN(mn) || v < mn)
+					mn = v;
+				if(Double.isNaN(mx) || v > mx)
+					mx = v;
+			}
+			min[a] = mn;
+			max[a] = mx;
+			range[a] = mx - mn;
+		}
+	}
+
+	/**
+	 * Construct the distance kernel of the given chunked dataset, reading all its chunks once.
+	 * The kernel has no columnar view, only the distances between values can be computed
+	 * @param data, chunked dataset
+	 * @throws IOException - the dataset cannot be read
+	 */
+	public DistanceKernel(ChunkedDataset data) throws IOException{
+		columns = null;
+		weights = null;
+		numAttributes = data.numAttributes();
+		numeric = new boolean[numAttributes];
+		numericColumns = new NumericColumn[numAttributes];
+		nominalColumns = new NominalColumn[numAttributes];
+		min = new double[numAttributes];
+		max = new double[numAttributes];
+		range = new double[numAttributes];
+		scale = range;
+		widening = false;
+		for(int a = 0; a < numAttributes; a++){
+			numeric[a] = data.isNumeric(a);
+			if(numeric[a]){
+				min[a] = Double.NaN;
+				max[a] = Double.NaN;
+			}
+		}
+		//Same values as attributeStats(a).numericStats, missing values are skipped
+		ChunkedDataset.Chunk chunk = data.newChunk();
+		for(int c = 0; c < data.numChunks(); c++){
+			data.read(c, chunk);
+			for(int i = 0; i < chunk.size(); i++){
+				double[] x = chunk.row(i);
+				for(int a = 0; a < numAttributes; a++){
+					double v = x[a];
+					if(!numeric[a] || Double.isNaN(v))
+						continue;
+					if(Double.isNaN(min[a]) || v < min[a])
+						min[a] = v;
+					if(Double.isNaN(max[a]) || v > max[a])
+						max[a] = v;
+				}
+			}
+		}
+		for(int a = 0; a < numAttributes; a++)
+			if(numeric[a])
+				range[a] = max[a] - min[a];
+	}
+
+	/**
+	 * Construct a distance kernel for attributes with no observed values,
+	 * the ranges of the numeric attributes are extended with {@link #widen(Instance)}
+	 * @param numeric, whether each attribute is numeric
+	 * @param weights, attribute weights (the array is shared, not copied)
+	 */
+	private DistanceKernel(boolean[] numeric, double[] weights){
+		this.columns = null;
+		this.weights = weights;
+		this.numeric = numeric;
+		numAttributes = numeric.length;
+		numericColumns = new NumericColumn[numAttributes];
+		nominalColumns = new NominalColumn[numAttributes];
+		min = new double[numAttributes];
+		max = new double[numAttributes];
+		range = new double[numAttributes];
+		scale = new double[numAttributes];
+		widening = true;
+		for(int a = 0; a < numAttributes; a++){
+			min[a] = Double.NaN;
+			max[a] = Double.NaN;
+			range[a] = Double.NaN;
+			scale[a] = Double.POSITIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * Construct a distance kernel for a stream of instances with the attributes of the given dataset.
+	 * The kernel has no columnar view, only the distances between instances and representatives
+	 * can be computed. Numeric attributes with a single observed value do not contribute to the distance
+	 * @param header, dataset (only its attributes are used)
+	 * @param weights, attribute weights (the array is shared, not copied)
+	 * @return the distance kernel
+	 */
+	public static DistanceKernel empty(Instances header, double[] weights){
+		boolean[] numeric = new boolean[header.numAttributes()];
+		for(int a = 0; a < numeric.length; a++)
+			numeric[a] = header.attribute(a).isNumeric();
+		return new DistanceKernel(numeric, weights);
+	}
+
+	/**
+	 * Extend the ranges of the numeric attributes of a kernel built with empty() to the values
+	 * of the given instance, missing values are skipped
+	 * @param x, instance
+	 * @return whether some range changed
+	 * @throws Exception - the kernel is built on a dataset
+	 */
+	public boolean widen(Instance x) throws Exception{
+		if(!widening)
+			throw new Exception("The ranges of a dataset kernel are fixed");
+		boolean changed = false;
+		for(int a = 0; a < numAttributes; a++){
+			double v = x.value(a);
+			if(!numeric[a] || Double.isNaN(v))
+				continue;
+			if(Double.isNaN(min[a]) || v < min[a]){
+				min[a] = v;
+				changed = true;
+			}
+			if(Double.isNaN(max[a]) || v > max[a]){
+				max[a] = v;
+				changed = true;
+			}
+			range[a] = max[a] - min[a];
+			scale[a] = (range[a] > 0)? range[a] : Double.POSITIVE_INFINITY;
+		}
+		return changed;
+	}
+
+	/**
+	 * Compute the distance between two instances using the given weights
+	 * @param x, instance
+	 * @param y, instance
+	 * @param weights, attribute weights
+	 * @return the distance d(x,y)
+	 */
+	public double distance(Instance x, Instance y, double[] weights){
+		double dist = 0;
+		for(int a = 0; a < numAttributes; a++){
+			if(numeric[a])
+				dist += weights[a]*(Math.abs(x.value(a) - y.value(a))/scale[a]);
+			else//attribute is discrete
+				dist += weights[a]*((x.value(a) == y.value(a))? 0 : 1);
+		}
+		return dist;
+	}
+
+	/**
+	 * Compute the distance between two instances using the weights of the kernel
+	 * @param x, instance
+	 * @param y, instance
+	 * @return the distance d(x,y)
+	 */
+	public double distance(Instance x, Instance y){
+		return distance(x, y, weights);
+	}
+
+	/**
+	 * Compute the distance between an instance and a cluster representative
+	 * @param x, instance
+	 * @param c, values of the representative
+	 * @param weights, attribute weights
+	 * @return the distance d(x,c)
+	 */
+	public double distance(Instance x, double[] c, double[] weights){
+		double dist = 0;
+		for(int a = 0; a < numAttributes; a++){
+			if(numeric[a])
+				dist += weights[a]*(Math.abs(x.value(a) - c[a])/scale[a]);
+			else//attribute is discrete
+				dist += weights[a]*((x.value(a) == c[a])? 0 : 1);
+		}
+		return dist;
+	}
+
+	/**
+	 * Compute the distance between an instance of the dataset and a cluster representative
+	 * @param row, index of the instance
+	 * @param c, values of the representative
+	 * @param weights, attribute weights
+	 * @return the distance d(x,c)
+	 */
+	public double distance(int row, double[] c, double[] weights){
+		double dist = 0;
+		for(int a = 0; a < numAttributes; a++){
+			if(numeric[a])
+				dist += weights[a]*(Math.abs(numericColumns[a].get(row) - c[a])/scale[a]);
+			else{//attribute is discrete, missing values never match
+				int v = nominalColumns[a].get(row);
+				dist += weights[a]*((v >= 0 && v == c[a])? 0 : 1);
+			}
+		}
+		return dist;
+	}
+
+	/**
+	 * Compute the distance between two instances of the dataset
+	 * @param row1, index of the first instance
+	 * @param row2, index of the second instance
+	 * @param weights, attribute weights
+	 * @return the distance d(x,y)
+	 */
+	public double distance(int row1, int row2, double[] weights){
+		double dist = 0;
+		for(int a = 0; a < numAttributes; a++){
+			if(numeric[a])
+				dist += weights[a]*(Math.abs(numericColumns[a].get(row1) - numericColumns[a].get(row2))/scale[a]);
+			else{//attribute is discrete, missing values never match
+				int v = nominalColumns[a].get(row1);
+				dist += weights[a]*((v >= 0 && v == nominalColumns[a].get(row2))? 0 : 1);
+			}
+		}
+		return dist;
+	}
+
+	/**
+	 * Compute the distance between two cluster representatives
+	 * @param c1, values of the first representative
+	 * @param c2, values of the second representative
+	 * @param weights, attribute weights
+	 * @return the distance d(c1,c2)
+	 */
+	public double distance(double[] c1, double[] c2, double[] weights){
+		double dist = 0;
+		for(int a = 0; a < numAttributes; a++){
+			if(numeric[a])
+				dist += weights[a]*(Math.abs(c1[a] - c2[a])/scale[a]);
+			else
+				dist += weights[a]*((c1[a] == c2[a])? 0 : 1);
+		}
+		return dist;
+	}
+
+	/**
+	 * Compute the normalized difference of two values of the given numeric attribute
+	 * @param a, index of the attribute
+	 * @param x, value
+	 * @param y, value
+	 * @return |x - y|/range
+	 */
+	public double normalizedDifference(int a, double x, double y){
+		return Math.abs(x - y)/scale[a];
+	}
+
+	/**
+	 * Get the dataset of the kernel, the instances of a dataset not built from instances are materialized
+	 * @return the dataset, null for a kernel built with empty() or on a chunked dataset
+	 */
+	public Instances getData(){
+		return (columns == null)? null : columns.getData();
+	}
+
+	/**
+	 * Checks whether this is the kernel of the given dataset, without materializing its instances
+	 * @param data, dataset
+	 * @return whether the kernel is built on the given dataset
+	 */
+	public boolean isKernelOf(Instances data){
+		return columns != null && columns.isViewOf(data);
+	}
+
+	public Dataset getColumns(){
+		return columns;
+	}
+
+	public int numAttributes(){
+		return numAttributes;
+	}
+
+	public boolean isNumeric(int a){
+		return numeric[a];
+	}
+
+	public double getMin(int a){
+		return min[a];
+	}
+
+	public double getMax(int a){
+		return max[a];
+	}
+
+	public double getRange(int a){
+		return range[a];
+	}
+
+	public double[] getWeights(){
+		return weights;
+	}
+
+	public void setWeights(double[] weights){
+		this.weights = weights;
+	}
+}
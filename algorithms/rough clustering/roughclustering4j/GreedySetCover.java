@@ -0,0 +1,143 @@
+package roughclustering;
+
+/**
+ * Implements the lazy greedy set cover used to compact orthocoverings: repeatedly select the set
+ * covering the largest number of elements not yet covered, the first one on ties, until every
+ * element is covered.
+ * The candidate sets are kept in a priority queue keyed by their gain; since gains only decrease,
+ * a gain in the queue is an upper bound and only the candidate on top needs to be re-evaluated.
+ * The selected sets (and their order) are the same of the naive greedy algorithm
+ * @author Andrea Campagner
+ *
+ */
+final class GreedySetCover {
+
+	private GreedySetCover(){
+	}
+
+	/**
+	 * Compute the greedy cover of the universe [0, n) by the given sets
+	 * @param n, size of the universe
+	 * @param sets, the candidate sets, as arrays of distinct elements
+	 * @return the indices of the selected sets, in order of selection
+	 */
+	static int[] cover(int n, int[][] sets){
+		//Sets containing each element, to keep the gains up to date as elements are covered
+		int[] start = new int[n + 1];
+		for(int[] s : sets)
+			for(int x : s)
+				start[x + 1]++;
+		for(int x = 0; x < n; x++)
+			start[x + 1] += start[x];
+		int[] next = start.clone();
+		int[] containing = new int[start[n]];
+		for(int j = 0; j < sets.length; j++)
+			for(int x : sets[j])
+				containing[next[x]++] = j;
+
+		int[] gain = new int[sets.length];
+		LongHeap heap = new LongHeap(sets.length);
+		for(int j = 0; j < sets.length; j++){
+			gain[j] = sets[j].length;
+			if(gain[j] > 0)
+				heap.push(LongHeap.key(Integer.MAX_VALUE - gain[j], j));
+		}
+		boolean[] covered = new boolean[n];
+		IntList result = new IntList();
+		int remaining = n;
+		while(remaining > 0 && !heap.isEmpty()){
+			long key = heap.pop();
+			int j = LongHeap.index(key);
+			if(gain[j] == 0)
+				continue;
+			if(Integer.MAX_VALUE - LongHeap.priority(key) != gain[j]){
+				//stale gain, re-evaluate
+				heap.push(LongHeap.key(Integer.MAX_VALUE - gain[j], j));
+				continue;
+			}
+			result.add(j);
+			for(int x : sets[j]){
+				if(covered[x])
+					continue;
+				covered[x] = true;
+				remaining--;
+				for(int e = start[x]; e < start[x + 1]; e++)
+					gain[containing[e]]--;
+			}
+		}
+		return result.toArray();
+	}
+
+	/**
+	 * Compute the greedy cover of the universe [0, n) by the given ranges of elements
+	 * @param n, size of the universe
+	 * @param lo, first element of each range
+	 * @param hi, element following the last one of each range
+	 * @return the indices of the selected ranges, in order of selection
+	 */
+	static int[] cover(int n, int[] lo, int[] hi){
+		//Fenwick tree of the uncovered elements, and next uncovered element (with path compression)
+		int[] tree = new int[n + 1];
+		for(int x = 1; x <= n; x++){
+			tree[x]++;
+			int parent = x + (x & -x);
+			if(parent <= n)
+				tree[parent] += tree[x];
+		}
+		int[] nextUncovered = new int[n + 1];
+		for(int x = 0; x <= n; x++)
+			nextUncovered[x] = x;
+
+		LongHeap heap = new LongHeap(lo.length);
+		for(int j = 0; j < lo.length; j++)
+			if(hi[j] > lo[j])
+				heap.push(LongHeap.key(Integer.MAX_VALUE - (hi[j] - lo[j]), j));
+		IntList result = new IntList();
+		int remaining = n;
+		while(remaining > 0 && !heap.isEmpty()){
+			long key = heap.pop();
+			int j = LongHeap.index(key);
+			int gain = prefix(tree, hi[j]) - prefix(tree, lo[j]);
+			if(gain == 0)
+				continue;
+			if(Integer.MAX_VALUE - LongHeap.priority(key) != gain){
+				//stale gain, re-evaluate
+				heap.push(LongHeap.key(Integer.MAX_VALUE - gain, j));
+				continue;
+			}
+			result.add(j);
+			for(int x = find(nextUncovered, lo[j]); x < hi[j]; x = find(nextUncovered, x + 1)){
+				nextUncovered[x] = x + 1;
+				remaining--;
+				for(int i = x + 1; i <= n; i += i & -i)
+					tree[i]--;
+			}
+		}
+		return result.toArray();
+	}
+
+	/**
+	 * Number of uncovered elements in [0, x)
+	 */
+	private static int prefix(int[] tree, int x){
+		int sum = 0;
+		for(int i = x; i > 0; i -= i & -i)
+			sum += tree[i];
+		return sum;
+	}
+
+	/**
+	 * First uncovered element greater or equal than x (n if none)
+	 */
+	private static int find(int[] next, int x){
+		int root = x;
+		while(next[root] != root)
+			root = next[root];
+		while(next[x] != root){
+			int t = next[x];
+			next[x] = root;
+			x = t;
+		}
+		return root;
+	}
+}
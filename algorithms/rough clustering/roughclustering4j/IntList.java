@@ -0,0 +1,47 @@
+package roughclustering;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive ints
+ * @author Andrea Campagner
+ *
+ */
+final class IntList {
+	private int[] values;
+	private int size;
+
+	IntList(){
+		this(16);
+	}
+
+	IntList(int capacity){
+		values = new int[Math.max(1, capacity)];
+	}
+
+	void add(int v){
+		if(size == values.length)
+			values = Arrays.copyOf(values, 2*values.length);
+		values[size++] = v;
+	}
+
+	int get(int i){
+		return values[i];
+	}
+
+	void set(int i, int v){
+		values[i] = v;
+	}
+
+	int size(){
+		return size;
+	}
+
+	void clear(){
+		size = 0;
+	}
+
+	int[] toArray(){
+		return Arrays.copyOf(values, size);
+	}
+}
@@ -0,0 +1,143 @@
+package roughclustering;
+
+import java.util.Arrays;
+
+/**
+ * Implements the orthocovering determined by a numeric attribute: the positive region of the
+ * orthopair of an instance x contains the instances y such that 1 - |x - y|/range >= threshold.
+ * Since the condition is monotone in |x - y|, on the column sorted by value each positive region
+ * is a contiguous range of positions, which is found with a sliding window in O(n log n)
+ * instead of comparing every pair of instances.
+ * Instances with a missing value (or attributes with no range) only cover themselves.
+ * The orthopairs have empty boundaries
+ * @author Andrea Campagner
+ *
+ */
+public class IntervalCovering {
+	private final int numInstances;
+	//instances in increasing order of value
+	private final int[] order;
+	//position of each instance in the order
+	private final int[] position;
+	//positive region of each instance, as the range [lo, hi) of positions
+	private final int[] lo;
+	private final int[] hi;
+
+	/**
+	 * Construct the orthocovering determined by the given numeric attribute
+	 * @param kernel, distance kernel of the dataset
+	 * @param a, index of the numeric attribute
+	 * @param threshold, similarity threshold
+	 */
+	public IntervalCovering(DistanceKernel kernel, int a, double threshold){
+		NumericColumn column = kernel.getColumns().numericColumn(a);
+		numInstances = column.size();
+		order = kernel.getColumns().sortedOrder(a);
+		position = new int[numInstances];
+		lo = new int[numInstances];
+		hi = new int[numInstances];
+		int valid = 0;
+		for(int p = 0; p < numInstances; p++){
+			position[order[p]] = p;
+			if(!Double.isNaN(column.get(order[p])))
+				valid++;
+		}
+		//Sliding window over the sorted values: both ends only move forward
+		int left = 0, right = 0;
+		for(int p = 0; p < numInstances; p++){
+			int j = order[p];
+			if(p >= valid || !similar(kernel, a, column.get(j), column.get(j), threshold)){
+				lo[j] = p;
+				hi[j] = p + 1;
+				continue;
+			}
+			while(!similar(kernel, a, column.get(j), column.get(order[left]), threshold))
+				left++;
+			if(right < p + 1)
+				right = p + 1;
+			while(right < valid && similar(kernel, a, column.get(j), column.get(order[right]), threshold))
+				right++;
+			lo[j] = left;
+			hi[j] = right;
+		}
+	}
+
+	private static boolean similar(DistanceKernel kernel, int a, double x, double y, double threshold){
+		return 1 - kernel.normalizedDifference(a, x, y) >= threshold;
+	}
+
+	public int numInstances(){
+		return numInstances;
+	}
+
+	/**
+	 * Compute the size of the positive region of the given instance
+	 * @param j, index of the instance
+	 * @return the size of the positive region
+	 */
+	public int size(int j){
+		return hi[j] - lo[j];
+	}
+
+	/**
+	 * Checks whether the positive region of instance j contains instance k
+	 * @param j, index of the instance
+	 * @param k, index of the instance
+	 * @return whether k is in the positive region of j
+	 */
+	public boolean contains(int j, int k){
+		return lo[j] <= position[k] && position[k] < hi[j];
+	}
+
+	/**
+	 * Compact the orthocovering with the greedy set cover heuristic: repeatedly select the
+	 * orthopair covering the largest number of instances not yet covered (the first one on ties)
+	 * until every instance is covered
+	 * @return the indices of the selected instances, in order of selection
+	 */
+	public int[] greedyCover(){
+		return GreedySetCover.cover(numInstances, lo, hi);
+	}
+
+	/**
+	 * Checks whether two of the selected orthopairs have intersecting positive regions
+	 * @param selected, indices of the selected instances
+	 * @return whether the orthopairs overlap
+	 */
+	public boolean overlaps(int[] selected){
+		//Scan the ranges in order of their first position, they are non-empty
+		int[] end = new int[numInstances];
+		Arrays.fill(end, -1);
+		for(int j : selected){
+			if(end[lo[j]] >= 0)
+				return true;
+			end[lo[j]] = hi[j];
+		}
+		int reach = 0;
+		for(int p = 0; p < numInstances; p++){
+			if(end[p] < 0)
+				continue;
+			if(p < reach)
+				return true;
+			reach = end[p];
+		}
+		return false;
+	}
+
+	/**
+	 * Construct the membership index of the orthocovering formed by the selected orthopairs,
+	 * over the instances in dataset order
+	 * @param selected, indices of the selected instances, in order of cluster
+	 * @param overlap, whether the orthopairs overlap
+	 * @return the membership index
+	 */
+	public MembershipIndex toIndex(int[] selected, boolean overlap){
+		IntList lower = new IntList();
+		for(int c = 0; c < selected.length; c++)
+			for(int p = lo[selected[c]]; p < hi[selected[c]]; p++){
+				lower.add(order[p]);
+				lower.add(c);
+			}
+		return new MembershipIndex(numInstances, selected.length, overlap, lower, new IntList(0));
+	}
+}
@@ -0,0 +1,232 @@
+package roughclustering;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Implements the metrics of an iteration of a rough clusterer: time spent in each phase,
+ * distance evaluations, size of the lower regions and of the boundaries, bytes allocated and DB-index.
+ * Phases not run by the clusterer (or skipped by the iteration) take 0 nanoseconds
+ * @author Andrea Campagner
+ *
+ */
+public class IterationMetrics {
+
+	/**
+	 * The phases of an iteration
+	 */
+	public enum Phase {
+		/** Rough assignment of the instances (neighbourhoods for the Rough Refinement clusterer) */
+		ASSIGNMENT,
+		/** Construction of the orthopartition (covering and merge for the Rough Refinement clusterer) */
+		ORTHOPARTITION,
+		/** Update of the cluster representatives */
+		CENTROIDS,
+		/** Recomputation of the attribute weights */
+		REWEIGHT,
+		/** Evaluation of the DB-index */
+		DAVIES_BOULDIN
+	}
+
+	private final int restart;
+	private final long seed;
+	private final int iteration;
+	private final long[] nanos = new long[Phase.values().length];
+	private final long startBytes;
+	private long allocatedBytes = -1;
+	private long distanceEvaluations = 0;
+	private int[] lowerSizes = new int[0];
+	private int[] boundarySizes = new int[0];
+	private int boundary = 0;
+	private long memberships = 0;
+	private double db = Double.NaN;
+
+	/**
+	 * Construct the metrics of an iteration, the allocations are counted from the construction
+	 * @param restart, index of the restart
+	 * @param seed, seed of the restart
+	 * @param iteration, index of the iteration
+	 */
+	IterationMetrics(int restart, long seed, int iteration){
+		this.restart = restart;
+		this.seed = seed;
+		this.iteration = iteration;
+		startBytes = allocatedBytes();
+	}
+
+	/**
+	 * Add the time elapsed since the given instant to a phase
+	 * @param phase, the phase
+	 * @param start, start of the phase (System.nanoTime())
+	 * @return the current instant
+	 */
+	long lap(Phase phase, long start){
+		long now = System.nanoTime();
+		nanos[phase.ordinal()] += now - start;
+		return now;
+	}
+
+	void addDistanceEvaluations(long count){
+		distanceEvaluations += count;
+	}
+
+	/**
+	 * Record the sizes of the lower regions and of the boundaries of a rough assignment
+	 * @param clustering, assignment of the instances
+	 * @param numClusters, number of clusters
+	 */
+	void regions(Memberships clustering, int numClusters){
+		lowerSizes = new int[numClusters];
+		boundarySizes = new int[numClusters];
+		boundary = 0;
+		memberships = 0;
+		int[] clusters = new int[clustering.getK()];
+		for(int i = 0; i < clustering.numInstances(); i++){
+			int count = clustering.clusters(i, clusters);
+			if(count > 1)
+				boundary++;
+			memberships += count;
+			for(int c = 0; c < count; c++)
+				if(count == 1)
+					lowerSizes[clusters[c]]++;
+				else
+					boundarySizes[clusters[c]]++;
+		}
+	}
+
+	/**
+	 * Record the sizes of the lower regions and of the boundaries from the statistics of a rough assignment
+	 * @param stats, statistics of the regions of the clusters
+	 */
+	void regions(CentroidStatistics stats){
+		int numClusters = stats.numClusters();
+		lowerSizes = new int[numClusters];
+		boundarySizes = new int[numClusters];
+		for(int j = 0; j < numClusters; j++){
+			lowerSizes[j] = (int) stats.lowerSize(j);
+			boundarySizes[j] = (int) (stats.upperSize(j) - stats.lowerSize(j));
+		}
+		boundary = (int) stats.boundary();
+		memberships = stats.memberships();
+	}
+
+	/**
+	 * Complete the metrics at the end of the iteration
+	 * @param db, DB-index of the iteration (NaN if not computed)
+	 */
+	void finish(double db){
+		this.db = db;
+		long bytes = allocatedBytes();
+		allocatedBytes = (startBytes < 0 || bytes < 0)? -1 : bytes - startBytes;
+	}
+
+	/**
+	 * Compute the number of bytes allocated by the current thread since its start
+	 * @return the number of bytes, -1 if the JVM does not support the measurement
+	 */
+	static long allocatedBytes(){
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if(bean instanceof com.sun.management.ThreadMXBean){
+			com.sun.management.ThreadMXBean b = (com.sun.management.ThreadMXBean) bean;
+			if(b.isThreadAllocatedMemorySupported() && b.isThreadAllocatedMemoryEnabled())
+				return b.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	public int getRestart() {
+		return restart;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public int getIteration() {
+		return iteration;
+	}
+
+	/**
+	 * Get the time spent in a phase
+	 * @param phase, the phase
+	 * @return the time in nanoseconds
+	 */
+	public long getNanos(Phase phase) {
+		return nanos[phase.ordinal()];
+	}
+
+	/**
+	 * Get the time spent in the iteration
+	 * @return the time in nanoseconds
+	 */
+	public long getTotalNanos() {
+		long total = 0;
+		for(long t : nanos)
+			total += t;
+		return total;
+	}
+
+	/**
+	 * Get the number of distances computed by the assignment and by the DB-index (the neighbourhoods
+	 * of the Rough Refinement clusterer are not counted)
+	 * @return the number of distance evaluations
+	 */
+	public long getDistanceEvaluations() {
+		return distanceEvaluations;
+	}
+
+	/**
+	 * Get the number of instances in the lower region of each cluster
+	 * @return the sizes of the lower regions
+	 */
+	public int[] getLowerSizes() {
+		return lowerSizes.clone();
+	}
+
+	/**
+	 * Get the number of instances in the boundary of each cluster
+	 * @return the sizes of the boundaries
+	 */
+	public int[] getBoundarySizes() {
+		return boundarySizes.clone();
+	}
+
+	/**
+	 * Get the number of instances in some boundary
+	 * @return the number of instances assigned to more than one cluster
+	 */
+	public int getBoundary() {
+		return boundary;
+	}
+
+	/**
+	 * Get the number of memberships of the instances
+	 * @return the sum of the sizes of the upper regions
+	 */
+	public long getMemberships() {
+		return memberships;
+	}
+
+	/**
+	 * Get the number of bytes allocated by the training thread during the iteration (the
+	 * allocations of the parallel steps run by other threads are not counted)
+	 * @return the number of bytes, -1 if the JVM does not support the measurement
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	public double getDaviesBouldin() {
+		return db;
+	}
+
+	@Override
+	public String toString(){
+		StringBuilder s = new StringBuilder("restart " + restart + " iteration " + iteration + ":");
+		for(Phase p : Phase.values())
+			s.append(" " + p.name().toLowerCase() + "=" + nanos[p.ordinal()]/1e6 + "ms");
+		s.append(" distances=" + distanceEvaluations + " boundary=" + boundary + " allocated=" + allocatedBytes
+				+ " db=" + db);
+		return s.toString();
+	}
+}
@@ -0,0 +1,83 @@
+package roughclustering;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of primitive long keys. Keys are built with {@link #key(int, int)} so that
+ * they order by a non-negative priority first and by an index second
+ * @author Andrea Campagner
+ *
+ */
+final class LongHeap {
+	private long[] heap;
+	private int size;
+
+	LongHeap(int capacity){
+		heap = new long[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Build the key of an index with the given priority, smaller priorities come first
+	 * and equal priorities are ordered by index
+	 */
+	static long key(int priority, int index){
+		return ((long) priority << 32) | (index & 0xffffffffL);
+	}
+
+	static int priority(long key){
+		return (int) (key >>> 32);
+	}
+
+	static int index(long key){
+		return (int) key;
+	}
+
+	int size(){
+		return size;
+	}
+
+	boolean isEmpty(){
+		return size == 0;
+	}
+
+	void clear(){
+		size = 0;
+	}
+
+	void push(long key){
+		if(size == heap.length)
+			heap = Arrays.copyOf(heap, 2*heap.length);
+		int i = size++;
+		while(i > 0){
+			int parent = (i - 1) >>> 1;
+			if(heap[parent] <= key)
+				break;
+			heap[i] = heap[parent];
+			i = parent;
+		}
+		heap[i] = key;
+	}
+
+	long peek(){
+		return heap[0];
+	}
+
+	long pop(){
+		long result = heap[0];
+		long last = heap[--size];
+		int i = 0;
+		while(true){
+			int child = 2*i + 1;
+			if(child >= size)
+				break;
+			if(child + 1 < size && heap[child + 1] < heap[child])
+				child++;
+			if(last <= heap[child])
+				break;
+			heap[i] = heap[child];
+			i = child;
+		}
+		heap[i] = last;
+		return result;
+	}
+}
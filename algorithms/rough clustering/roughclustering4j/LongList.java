@@ -0,0 +1,47 @@
+package roughclustering;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive longs
+ * @author Andrea Campagner
+ *
+ */
+final class LongList {
+	private long[] values;
+	private int size;
+
+	LongList(){
+		this(16);
+	}
+
+	LongList(int capacity){
+		values = new long[Math.max(1, capacity)];
+	}
+
+	void add(long v){
+		if(size == values.length)
+			values = Arrays.copyOf(values, 2*values.length);
+		values[size++] = v;
+	}
+
+	long get(int i){
+		return values[i];
+	}
+
+	void set(int i, long v){
+		values[i] = v;
+	}
+
+	int size(){
+		return size;
+	}
+
+	void clear(){
+		size = 0;
+	}
+
+	long[] toArray(){
+		return Arrays.copyOf(values, size);
+	}
+}
@@ -0,0 +1,164 @@
+package roughclustering;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+/**
+ * Implements a dataset read from a file in the binary columnar format written by {@link ColumnarFile}.
+ * The file is memory-mapped: opening it only reads the header, so the pages of the file are shared
+ * (through the page cache) by all the processes reading it. The columns are read in place from the
+ * mapping, they are never copied to the heap, and the Weka instances are only materialized if they
+ * are requested
+ * @author Andrea Campagner
+ *
+ */
+public class MappedDataset implements Dataset {
+	//largest mapped region, a power of 2 multiple of the width of the values
+	private static final long SEGMENT = 1L << 30;
+
+	private final File file;
+	private final int numInstances;
+	private final int numAttributes;
+	private final boolean[] numeric;
+	private final int[] numValues;
+	private final Instances header;
+	private final NumericColumn[] numericColumns;
+	private final NominalColumn[] nominalColumns;
+	private final int[][] sortedOrders;
+	private Instances data = null;
+
+	/**
+	 * Open the given file
+	 * @param file, a file written by ColumnarFile
+	 * @throws Exception - the file is not in the columnar format, or it cannot be read
+	 */
+	public MappedDataset(File file) throws Exception{
+		this.file = file;
+		try(RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()){
+			ColumnarFile.Layout layout = ColumnarFile.readLayout(channel, file);
+			header = layout.header;
+			numInstances = layout.numInstances;
+			numAttributes = header.numAttributes();
+			numeric = new boolean[numAttributes];
+			numValues = new int[numAttributes];
+			for(int a = 0; a < numAttributes; a++){
+				numeric[a] = header.attribute(a).isNumeric();
+				numValues[a] = numeric[a]? 0 : header.attribute(a).numValues();
+			}
+
+			//Map the columns, in segments of at most SEGMENT bytes
+			numericColumns = new NumericColumn[numAttributes];
+			nominalColumns = new NominalColumn[numAttributes];
+			for(int a = 0; a < numAttributes; a++){
+				int width = ColumnarFile.width(header, a);
+				long length = ((long) numInstances)*width;
+				MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((length + SEGMENT - 1)/SEGMENT)];
+				for(int s = 0; s < segments.length; s++){
+					long start = s*SEGMENT;
+					segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, layout.offsets[a] + start, 
+							Math.min(SEGMENT, length - start));
+					segments[s].order(ColumnarFile.ORDER);
+				}
+				int shift = Long.numberOfTrailingZeros(SEGMENT/width);
+				if(numeric[a]){
+					DoubleBuffer[] buffers = new DoubleBuffer[segments.length];
+					for(int s = 0; s < segments.length; s++)
+						buffers[s] = segments[s].asDoubleBuffer();
+					numericColumns[a] = new NumericColumn(buffers, shift, numInstances);
+				}
+				else{
+					IntBuffer[] buffers = new IntBuffer[segments.length];
+					for(int s = 0; s < segments.length; s++)
+						buffers[s] = segments[s].asIntBuffer();
+					nominalColumns[a] = new NominalColumn(buffers, shift, numInstances);
+				}
+			}
+		}
+		sortedOrders = new int[numAttributes][];
+	}
+
+	public File getFile(){
+		return file;
+	}
+
+	/**
+	 * Get the dataset as Weka instances, materialized on first use
+	 */
+	@Override
+	public synchronized Instances getData(){
+		if(data == null){
+			Instances result = new Instances(header, numInstances);
+			for(int i = 0; i < numInstances; i++)
+				result.add(new DenseInstance(1.0, row(i)));
+			data = result;
+		}
+		return data;
+	}
+
+	@Override
+	public synchronized boolean isViewOf(Instances data){
+		return this.data == data && data != null;
+	}
+
+	/**
+	 * Get an empty dataset with the attributes of this dataset, shared and not to be modified
+	 */
+	@Override
+	public Instances getHeader(){
+		return header;
+	}
+
+	@Override
+	public int numInstances(){
+		return numInstances;
+	}
+
+	@Override
+	public int numAttributes(){
+		return numAttributes;
+	}
+
+	@Override
+	public boolean isNumeric(int a){
+		return numeric[a];
+	}
+
+	@Override
+	public int numValues(int a){
+		return numValues[a];
+	}
+
+	/**
+	 * Get the column of the given numeric attribute, read in place from the mapping
+	 */
+	@Override
+	public NumericColumn numericColumn(int a){
+		return numericColumns[a];
+	}
+
+	/**
+	 * Get the column of the given discrete attribute, read in place from the mapping
+	 */
+	@Override
+	public NominalColumn nominalColumn(int a){
+		return nominalColumns[a];
+	}
+
+	/**
+	 * Get the instances in increasing order of the given numeric attribute, the order is computed
+	 * on first use and kept on the heap
+	 */
+	@Override
+	public synchronized int[] sortedOrder(int a){
+		if(sortedOrders[a] == null)
+			sortedOrders[a] = ColumnarDataset.sort(numericColumns[a]);
+		return sortedOrders[a];
+	}
+}
@@ -0,0 +1,150 @@
+package roughclustering;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Implements the rough assignment of a dataset spilled to a temporary file, used when the
+ * assignment does not fit in memory.
+ * The assignment of each instance is a bitmask of the clusters it belongs to, stored in
+ * words() 64-bit words: bit j is set if the instance is in the upper region of cluster j, and an
+ * instance is in the lower region of a cluster if it belongs to that cluster only.
+ * The file is deleted when closed
+ * @author Andrea Campagner
+ *
+ */
+public class MembershipFile implements AutoCloseable {
+	private final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final int numInstances;
+	private final int k;
+	private final int words;
+	private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+	/**
+	 * Create the file of the assignment of the given number of instances, initially empty
+	 * @param numInstances, number of instances
+	 * @param k, number of clusters
+	 * @param directory, directory of the file, null for the default temporary directory
+	 * @throws IOException - the file cannot be created
+	 */
+	public MembershipFile(int numInstances, int k, File directory) throws IOException{
+		this.numInstances = numInstances;
+		this.k = k;
+		words = Bitsets.words(k);
+		file = File.createTempFile("memberships", ".bin", directory);
+		file.deleteOnExit();
+		raf = new RandomAccessFile(file, "rw");
+		channel = raf.getChannel();
+		raf.setLength(((long) numInstances)*words*8);
+	}
+
+	/**
+	 * Get the number of words of the bitmask of an instance
+	 * @return the number of words
+	 */
+	public int words(){
+		return words;
+	}
+
+	public int numInstances(){
+		return numInstances;
+	}
+
+	public int getK(){
+		return k;
+	}
+
+	/**
+	 * Read the bitmasks of the instances in [from, to)
+	 * @param from, first instance
+	 * @param to, instance following the last one
+	 * @param masks, destination of the bitmasks, (to - from)*words() words
+	 * @throws IOException - the file cannot be read
+	 */
+	public synchronized void read(int from, int to, long[] masks) throws IOException{
+		ByteBuffer b = buffer((to - from)*words);
+		long position = ((long) from)*words*8;
+		while(b.hasRemaining()){
+			int read = channel.read(b, position);
+			if(read < 0)
+				throw new IOException("Unexpected end of file: " + file);
+			position += read;
+		}
+		b.flip();
+		b.asLongBuffer().get(masks, 0, (to - from)*words);
+	}
+
+	/**
+	 * Write the bitmasks of the instances in [from, to)
+	 * @param from, first instance
+	 * @param to, instance following the last one
+	 * @param masks, the bitmasks, (to - from)*words() words
+	 * @throws IOException - the file cannot be written
+	 */
+	public synchronized void write(int from, int to, long[] masks) throws IOException{
+		ByteBuffer b = buffer((to - from)*words);
+		b.asLongBuffer().put(masks, 0, (to - from)*words);
+		long position = ((long) from)*words*8;
+		while(b.hasRemaining())
+			position += channel.write(b, position);
+	}
+
+	/**
+	 * Get the clusters of an instance
+	 * @param row, index of the instance
+	 * @return the indices of the clusters whose upper region contains the instance, in increasing order
+	 * @throws IOException - the file cannot be read
+	 */
+	public int[] get(int row) throws IOException{
+		long[] mask = new long[words];
+		read(row, row + 1, mask);
+		int[] result = new int[Bitsets.cardinality(mask)];
+		int c = 0;
+		for(int j = Bitsets.nextSetBit(mask, 0); j >= 0; j = Bitsets.nextSetBit(mask, j + 1))
+			result[c++] = j;
+		return result;
+	}
+
+	/**
+	 * Copy the assignment to another file of the same size
+	 * @param target, destination
+	 * @throws IOException - the files cannot be read or written
+	 */
+	public synchronized void copyTo(MembershipFile target) throws IOException{
+		long size = ((long) numInstances)*words*8;
+		synchronized(target){
+			long position = 0;
+			while(position < size)
+				position += channel.transferTo(position, size - position, target.channel.position(position));
+		}
+	}
+
+	/**
+	 * Get a buffer of the given number of words, positioned at 0 with the limit at its size
+	 */
+	private ByteBuffer buffer(int numWords){
+		if(buffer.capacity() < 8*numWords)
+			buffer = ByteBuffer.allocate(8*numWords).order(ByteOrder.nativeOrder());
+		buffer.clear().limit(8*numWords);
+		return buffer;
+	}
+
+	public File getFile(){
+		return file;
+	}
+
+	/**
+	 * Close and delete the file
+	 */
+	@Override
+	public void close() throws IOException{
+		raf.close();
+		file.delete();
+	}
+}
@@ -0,0 +1,464 @@
+package roughclustering;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import weka.core.Instance;
+
+/**
+ * Implements a membership index of an orthopartition over an indexed universe: for every
+ * instance the clusters whose lower region (resp. boundary) contain it, and for every cluster
+ * the instances of its lower region (resp. boundary), both stored as compressed arrays.
+ * The lower and upper entropies are computed on the index, from per-cluster counts, without
+ * copying the orthopairs
+ * @author Andrea Campagner
+ *
+ */
+public class MembershipIndex {
+	private final int numInstances;
+	private final int numClusters;
+	private final boolean overlap;
+	//instance -> clusters
+	private final int[] lowerStart;
+	private final int[] lowerClusters;
+	private final int[] bndStart;
+	private final int[] bndClusters;
+	//cluster -> instances, in increasing order
+	private final int[] clusterLowerStart;
+	private final int[] clusterLower;
+	private final int[] clusterBndStart;
+	private final int[] clusterBnd;
+
+	/**
+	 * Construct the membership index of the given orthopartition
+	 * @param p, an orthopartition
+	 * @throws Exception - the orthopairs are not defined on the universe of the orthopartition
+	 */
+	public MembershipIndex(Orthopartition p) throws Exception{
+		this(p.getUniverse().size(), p.numOrthopairs(), p.overlap, pairs(p, true), pairs(p, false));
+	}
+
+	/**
+	 * Construct the membership index of a collection of orthopairs
+	 * @param family, a collection of orthopairs
+	 * @param universe, the indexed universe of the orthopairs
+	 * @param overlap, whether the orthopairs may overlap
+	 * @throws Exception - the orthopairs are not defined on the universe
+	 */
+	public MembershipIndex(ArrayList<Orthopair> family, Universe universe, boolean overlap) throws Exception{
+		this(universe.size(), family.size(), overlap, pairs(family, universe, true), pairs(family, universe, false));
+	}
+
+	/**
+	 * Construct a membership index from (instance, cluster) pairs
+	 * @param numInstances, size of the universe
+	 * @param numClusters, number of clusters
+	 * @param overlap, whether the clusters may overlap
+	 * @param lower, pairs (instance, cluster) of the lower regions, interleaved
+	 * @param bnd, pairs (instance, cluster) of the boundaries, interleaved
+	 */
+	MembershipIndex(int numInstances, int numClusters, boolean overlap, IntList lower, IntList bnd){
+		this.numInstances = numInstances;
+		this.numClusters = numClusters;
+		this.overlap = overlap;
+		lowerStart = new int[numInstances + 1];
+		lowerClusters = new int[lower.size()/2];
+		clusterLowerStart = new int[numClusters + 1];
+		clusterLower = new int[lower.size()/2];
+		fill(lower, lowerStart, lowerClusters, clusterLowerStart, clusterLower);
+		bndStart = new int[numInstances + 1];
+		bndClusters = new int[bnd.size()/2];
+		clusterBndStart = new int[numClusters + 1];
+		clusterBnd = new int[bnd.size()/2];
+		fill(bnd, bndStart, bndClusters, clusterBndStart, clusterBnd);
+	}
+
+	/**
+	 * Collect the (instance, cluster) pairs of the lower regions or of the boundaries of an orthopartition,
+	 * from the membership bitmasks if the orthopartition is in compact form
+	 */
+	private static IntList pairs(Orthopartition p, boolean lower) throws Exception{
+		Memberships m = p.getMemberships();
+		if(m == null)
+			return pairs(p.family(), p.getUniverse(), lower);
+		IntList result = new IntList();
+		int[] clusters = new int[m.getK()];
+		for(int i = 0; i < m.numInstances(); i++){
+			int count = m.clusters(i, clusters);
+			if((count == 1) == lower)
+				for(int c = 0; c < count; c++){
+					result.add(i);
+					result.add(clusters[c]);
+				}
+		}
+		return result;
+	}
+
+	/**
+	 * Collect the (instance, cluster) pairs of the lower regions or of the boundaries, from the set
+	 * bits of the regions if the orthopair is backed by bitsets over the universe
+	 */
+	private static IntList pairs(ArrayList<Orthopair> family, Universe universe, boolean lower) throws Exception{
+		IntList result = new IntList();
+		for(int c = 0; c < family.size(); c++){
+			BitOrthopair b = family.get(c).bits();
+			if(b != null && b.getIndexedUniverse() == universe){
+				long[] region = lower? b.getP() : b.getBnd();
+				for(int i = Bitsets.nextSetBit(region, 0); i >= 0; i = Bitsets.nextSetBit(region, i + 1)){
+					result.add(i);
+					result.add(c);
+				}
+			}else
+				for(Instance x : (lower? family.get(c).lower() : family.get(c).boundary())){
+					int i = universe.indexOf(x);
+					if(i < 0)
+						throw new Exception("Not all orthopairs are defined on the same universe");
+					result.add(i);
+					result.add(c);
+				}
+		}
+		return result;
+	}
+
+	/**
+	 * Build both compressed directions of a relation by counting sort, so that the clusters
+	 * of an instance and the instances of a cluster are in increasing order
+	 */
+	private void fill(IntList pairs, int[] start, int[] clusters, int[] clusterStart, int[] instances){
+		int m = pairs.size()/2;
+		for(int e = 0; e < m; e++){
+			start[pairs.get(2*e) + 1]++;
+			clusterStart[pairs.get(2*e + 1) + 1]++;
+		}
+		for(int i = 0; i < numInstances; i++)
+			start[i + 1] += start[i];
+		for(int c = 0; c < numClusters; c++)
+			clusterStart[c + 1] += clusterStart[c];
+		int[] next = new int[numClusters];
+		for(int c = 0; c < numClusters; c++)
+			next[c] = clusterStart[c];
+		//the instances of each cluster are first bucketed by cluster ...
+		for(int e = 0; e < m; e++){
+			int c = pairs.get(2*e + 1);
+			instances[next[c]++] = pairs.get(2*e);
+		}
+		//... and then sorted, which also gives the clusters of each instance in order
+		for(int c = 0; c < numClusters; c++)
+			Arrays.sort(instances, clusterStart[c], clusterStart[c + 1]);
+		int[] pos = new int[numInstances];
+		for(int i = 0; i < numInstances; i++)
+			pos[i] = start[i];
+		for(int c = 0; c < numClusters; c++)
+			for(int e = clusterStart[c]; e < clusterStart[c + 1]; e++)
+				clusters[pos[instances[e]]++] = c;
+	}
+
+	/**
+	 * Compute the membership index of the meet of the two indexed orthopartitions, from the sparse
+	 * contingency table of the pairs of clusters built in a single pass over the instances.
+	 * An instance belongs to the meet cluster (i, j) if it is in the upper regions of i and j,
+	 * in its lower region if it is in the lower regions of both.
+	 * The non-empty meet clusters are numbered in lexicographic order of (i, j), as in
+	 * {@link Orthopartition#meet(Orthopartition)}
+	 * @param other, membership index of another orthopartition
+	 * @param map, index in other of each instance of this index (null if the universes are indexed in the same order)
+	 * @return the membership index of the meet
+	 */
+	public MembershipIndex meet(MembershipIndex other, int[] map){
+		//Collect the cells of the contingency table, as (cluster pair, instance, region)
+		long k2 = other.numClusters;
+		LongList cells = new LongList();
+		IntList instances = new IntList();
+		IntList lower = new IntList();
+		for(int x = 0; x < numInstances; x++){
+			int y = (map == null)? x : map[x];
+			for(int e = lowerStart[x]; e < lowerStart[x + 1]; e++){
+				long i = lowerClusters[e];
+				for(int f = other.lowerStart[y]; f < other.lowerStart[y + 1]; f++){
+					cells.add(i*k2 + other.lowerClusters[f]);
+					instances.add(x);
+					lower.add(1);
+				}
+				for(int f = other.bndStart[y]; f < other.bndStart[y + 1]; f++){
+					cells.add(i*k2 + other.bndClusters[f]);
+					instances.add(x);
+					lower.add(0);
+				}
+			}
+			for(int e = bndStart[x]; e < bndStart[x + 1]; e++){
+				long i = bndClusters[e];
+				for(int f = other.lowerStart[y]; f < other.lowerStart[y + 1]; f++){
+					cells.add(i*k2 + other.lowerClusters[f]);
+					instances.add(x);
+					lower.add(0);
+				}
+				for(int f = other.bndStart[y]; f < other.bndStart[y + 1]; f++){
+					cells.add(i*k2 + other.bndClusters[f]);
+					instances.add(x);
+					lower.add(0);
+				}
+			}
+		}
+
+		//Number the non-empty cells in lexicographic order
+		long[] keys = cells.toArray();
+		Arrays.sort(keys);
+		int numCells = 0;
+		for(int e = 0; e < keys.length; e++)
+			if(e == 0 || keys[e] != keys[e - 1])
+				keys[numCells++] = keys[e];
+		IntList lowerPairs = new IntList();
+		IntList bndPairs = new IntList();
+		for(int e = 0; e < cells.size(); e++){
+			int c = Arrays.binarySearch(keys, 0, numCells, cells.get(e));
+			IntList target = (lower.get(e) == 1)? lowerPairs : bndPairs;
+			target.add(instances.get(e));
+			target.add(c);
+		}
+		return new MembershipIndex(numInstances, numCells, overlap || other.overlap, lowerPairs, bndPairs);
+	}
+
+	public int numInstances(){
+		return numInstances;
+	}
+
+	public int numClusters(){
+		return numClusters;
+	}
+
+	public boolean isOverlap(){
+		return overlap;
+	}
+
+	/**
+	 * Compute the size of the lower region of the given cluster
+	 * @param c, index of the cluster
+	 * @return the size of the lower region
+	 */
+	public int lowerSize(int c){
+		return clusterLowerStart[c + 1] - clusterLowerStart[c];
+	}
+
+	/**
+	 * Compute the size of the boundary of the given cluster
+	 * @param c, index of the cluster
+	 * @return the size of the boundary
+	 */
+	public int boundarySize(int c){
+		return clusterBndStart[c + 1] - clusterBndStart[c];
+	}
+
+	/**
+	 * Compute the number of lower regions containing the given instance
+	 * @param i, index of the instance
+	 * @return the number of lower regions
+	 */
+	public int numLower(int i){
+		return lowerStart[i + 1] - lowerStart[i];
+	}
+
+	/**
+	 * Compute the number of boundaries containing the given instance
+	 * @param i, index of the instance
+	 * @return the number of boundaries
+	 */
+	public int numBoundaries(int i){
+		return bndStart[i + 1] - bndStart[i];
+	}
+
+	/**
+	 * Get a cluster whose lower region contains the given instance
+	 * @param i, index of the instance
+	 * @param e, position of the cluster, less than numLower(i)
+	 * @return the index of the e-th such cluster, in increasing order
+	 */
+	public int lowerCluster(int i, int e){
+		return lowerClusters[lowerStart[i] + e];
+	}
+
+	/**
+	 * Get a cluster whose boundary contains the given instance
+	 * @param i, index of the instance
+	 * @param e, position of the cluster, less than numBoundaries(i)
+	 * @return the index of the e-th such cluster, in increasing order
+	 */
+	public int boundaryCluster(int i, int e){
+		return bndClusters[bndStart[i] + e];
+	}
+
+	/**
+	 * Get an instance of the lower region of the given cluster
+	 * @param c, index of the cluster
+	 * @param e, position of the instance, less than lowerSize(c)
+	 * @return the index of the e-th instance, in increasing order
+	 */
+	public int lowerInstance(int c, int e){
+		return clusterLower[clusterLowerStart[c] + e];
+	}
+
+	/**
+	 * Get an instance of the boundary of the given cluster
+	 * @param c, index of the cluster
+	 * @param e, position of the instance, less than boundarySize(c)
+	 * @return the index of the e-th instance, in increasing order
+	 */
+	public int boundaryInstance(int c, int e){
+		return clusterBnd[clusterBndStart[c] + e];
+	}
+
+	/**
+	 * Compute the value of the lower entropy: the boundaries are assigned to the lower regions,
+	 * without overlaps each boundary instance goes to the cluster with the largest upper region
+	 * (the first one on ties), with overlaps every boundary is added to its lower region
+	 * @return the lower entropy
+	 */
+	public double lowerEntropy(){
+		long[] l = new long[numClusters];
+		if(!overlap){
+			int[] b = new int[numClusters];
+			LongHeap heap = new LongHeap(numClusters);
+			for(int c = 0; c < numClusters; c++){
+				l[c] = lowerSize(c);
+				b[c] = boundarySize(c);
+				if(b[c] > 0)
+					heap.push(LongHeap.key(Integer.MAX_VALUE - (int) (l[c] + b[c]), c));
+			}
+			boolean[] absorbed = new boolean[numInstances];
+			boolean[] swept = new boolean[numClusters];
+			while(!heap.isEmpty()){
+				long key = heap.pop();
+				int c = LongHeap.index(key);
+				if(b[c] == 0)
+					continue;
+				int u = (int) (l[c] + b[c]);
+				if(Integer.MAX_VALUE - LongHeap.priority(key) != u){
+					//the upper region shrunk since the key was pushed
+					heap.push(LongHeap.key(Integer.MAX_VALUE - u, c));
+					continue;
+				}
+				//The whole boundary goes to the lower region, its instances (and the lower
+				//region) are removed from the other boundaries
+				l[c] += b[c];
+				b[c] = 0;
+				absorb(c, clusterBndStart, clusterBnd, absorbed, b);
+				if(!swept[c]){
+					swept[c] = true;
+					absorb(c, clusterLowerStart, clusterLower, absorbed, b);
+				}
+			}
+			return pairProducts(l)/((double) numInstances*numInstances);
+		}else{
+			for(int c = 0; c < numClusters; c++)
+				l[c] = lowerSize(c) + boundarySize(c);
+			return (pairProducts(l) - sharedProducts(l, null))/((double) numInstances*numInstances);
+		}
+	}
+
+	/**
+	 * Compute the value of the upper entropy: the boundary instances are moved one at a time to
+	 * the cluster with the smallest lower region (the first one on ties), each time the instance
+	 * with the smallest index in the boundary of that cluster is moved
+	 * @return the upper entropy
+	 */
+	public double upperEntropy(){
+		long[] l = new long[numClusters];
+		int[] b = new int[numClusters];
+		int[] nextBnd = new int[numClusters];
+		int[] moved = new int[numInstances];
+		Arrays.fill(moved, -1);
+		LongHeap heap = new LongHeap(numClusters);
+		for(int c = 0; c < numClusters; c++){
+			l[c] = lowerSize(c);
+			b[c] = boundarySize(c);
+			nextBnd[c] = clusterBndStart[c];
+			if(b[c] > 0)
+				heap.push(LongHeap.key(lowerSize(c), c));
+		}
+		boolean[] absorbed = new boolean[numInstances];
+		boolean[] swept = new boolean[numClusters];
+		while(!heap.isEmpty()){
+			int c = LongHeap.index(heap.pop());
+			if(b[c] == 0)
+				continue;
+			//The lower region of c is removed from the other boundaries
+			if(!swept[c]){
+				swept[c] = true;
+				absorb(c, clusterLowerStart, clusterLower, absorbed, b);
+			}
+			if(b[c] == 0)
+				continue;
+			while(absorbed[clusterBnd[nextBnd[c]]])
+				nextBnd[c]++;
+			int i = clusterBnd[nextBnd[c]++];
+			//Move the instance to the lower region of c
+			absorbed[i] = true;
+			moved[i] = c;
+			l[c]++;
+			b[c]--;
+			for(int e = bndStart[i]; e < bndStart[i + 1]; e++)
+				if(bndClusters[e] != c)
+					b[bndClusters[e]]--;
+			if(b[c] > 0)
+				heap.push(LongHeap.key((int) l[c], c));
+		}
+		if(!overlap)
+			return pairProducts(l)/((double) numInstances*numInstances);
+		return (pairProducts(l) - sharedProducts(l, moved))/((double) numInstances*numInstances);
+	}
+
+	/**
+	 * Remove the given instances of cluster c from the boundaries of the other clusters
+	 */
+	private void absorb(int c, int[] start, int[] instances, boolean[] absorbed, int[] b){
+		for(int e = start[c]; e < start[c + 1]; e++){
+			int i = instances[e];
+			if(absorbed[i])
+				continue;
+			absorbed[i] = true;
+			for(int f = bndStart[i]; f < bndStart[i + 1]; f++)
+				if(bndClusters[f] != c)
+					b[bndClusters[f]]--;
+		}
+	}
+
+	/**
+	 * Compute sum_{o != p} s_o*s_p
+	 */
+	private static long pairProducts(long[] s){
+		long sum = 0, squares = 0;
+		for(long v : s){
+			sum += v;
+			squares += v*v;
+		}
+		return sum*sum - squares;
+	}
+
+	/**
+	 * Compute sum_{o != p} |L_o intersect L_p|*s_p, where L are the lower regions (with the
+	 * boundaries if moved is null, plus the moved instances otherwise), as
+	 * sum_x (|L(x)| - 1)*sum_{p in L(x)} s_p
+	 */
+	private long sharedProducts(long[] s, int[] moved){
+		long result = 0;
+		for(int i = 0; i < numInstances; i++){
+			long sum = 0;
+			int count = 0;
+			for(int e = lowerStart[i]; e < lowerStart[i + 1]; e++){
+				sum += s[lowerClusters[e]];
+				count++;
+			}
+			if(moved == null){
+				for(int e = bndStart[i]; e < bndStart[i + 1]; e++){
+					sum += s[bndClusters[e]];
+					count++;
+				}
+			}else if(moved[i] >= 0){
+				sum += s[moved[i]];
+				count++;
+			}
+			if(count > 1)
+				result += (count - 1)*sum;
+		}
+		return result;
+	}
+}
@@ -0,0 +1,178 @@
+package roughclustering;
+
+import java.util.Arrays;
+
+/**
+ * Implements the rough assignment of a dataset in memory, in preallocated primitive buffers that are
+ * overwritten by each assignment, so that assigning the instances does not allocate.
+ * As in {@link MembershipFile} the assignment of each instance is a bitmask of the clusters it belongs
+ * to, stored in words() 64-bit words: bit j is set if the instance is in the upper region of cluster j,
+ * and an instance is in the lower region of a cluster if it belongs to that cluster only.
+ * Distinct instances are stored in disjoint words, so they can be assigned concurrently
+ * @author Andrea Campagner
+ *
+ */
+public class Memberships {
+	private final int numInstances;
+	private final int k;
+	private final int words;
+	private final long[] masks;
+
+	/**
+	 * Construct the assignment of the given number of instances, initially empty
+	 * @param numInstances, number of instances
+	 * @param k, number of clusters
+	 */
+	public Memberships(int numInstances, int k){
+		this.numInstances = numInstances;
+		this.k = k;
+		words = Bitsets.words(k);
+		masks = new long[numInstances*words];
+	}
+
+	public Memberships(Memberships m){
+		numInstances = m.numInstances;
+		k = m.k;
+		words = m.words;
+		masks = m.masks.clone();
+	}
+
+	/**
+	 * Get the number of words of the bitmask of an instance
+	 * @return the number of words
+	 */
+	public int words(){
+		return words;
+	}
+
+	public int numInstances(){
+		return numInstances;
+	}
+
+	public int getK(){
+		return k;
+	}
+
+	/**
+	 * Remove an instance from all the clusters
+	 * @param row, index of the instance
+	 */
+	public void clear(int row){
+		Arrays.fill(masks, row*words, (row + 1)*words, 0);
+	}
+
+	/**
+	 * Add an instance to the upper region of a cluster
+	 * @param row, index of the instance
+	 * @param j, index of the cluster
+	 */
+	public void add(int row, int j){
+		masks[row*words + (j >>> 6)] |= 1L << j;
+	}
+
+	/**
+	 * Checks whether an instance belongs to the upper region of a cluster
+	 * @param row, index of the instance
+	 * @param j, index of the cluster
+	 * @return true if the instance is in the cluster
+	 */
+	public boolean contains(int row, int j){
+		return (masks[row*words + (j >>> 6)] & (1L << j)) != 0;
+	}
+
+	/**
+	 * Get the number of clusters of an instance
+	 * @param row, index of the instance
+	 * @return the number of clusters whose upper region contains the instance
+	 */
+	public int count(int row){
+		int result = 0;
+		for(int w = row*words; w < (row + 1)*words; w++)
+			result += Long.bitCount(masks[w]);
+		return result;
+	}
+
+	/**
+	 * Get the clusters of an instance
+	 * @param row, index of the instance
+	 * @param clusters, destination of the indices of the clusters, in increasing order
+	 * @return the number of clusters
+	 */
+	public int clusters(int row, int[] clusters){
+		return clusters(masks, row*words, words, clusters);
+	}
+
+	/**
+	 * Decode a bitmask
+	 * @param masks, the bitmasks
+	 * @param offset, first word of the bitmask
+	 * @param words, number of words of a bitmask
+	 * @param clusters, destination of the indices of the clusters, in increasing order
+	 * @return the number of clusters
+	 */
+	static int clusters(long[] masks, int offset, int words, int[] clusters){
+		int count = 0;
+		for(int w = 0; w < words; w++)
+			for(long bits = masks[offset + w]; bits != 0; bits &= bits - 1)
+				clusters[count++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+		return count;
+	}
+
+	/**
+	 * Get the number of orthopairs of the assignment: the largest index of a cluster with some
+	 * instance, plus one
+	 * @return the number of clusters
+	 */
+	public int numClusters(){
+		long[] union = new long[words];
+		for(int i = 0; i < masks.length; i++)
+			union[i % words] |= masks[i];
+		for(int w = words - 1; w >= 0; w--)
+			if(union[w] != 0)
+				return (w << 6) + 64 - Long.numberOfLeadingZeros(union[w]);
+		return 0;
+	}
+
+	/**
+	 * Remove the clusters with no instance, the other clusters keep their order
+	 * @return the assignment of the instances to the non-empty clusters, renumbered from 0
+	 */
+	public Memberships compact(){
+		long[] union = new long[words];
+		for(int i = 0; i < masks.length; i++)
+			union[i % words] |= masks[i];
+		int[] renumbered = new int[k];
+		int size = 0;
+		for(int j = 0; j < k; j++)
+			renumbered[j] = ((union[j >>> 6] & (1L << j)) != 0)? size++ : -1;
+		Memberships result = new Memberships(numInstances, size);
+		int[] clusters = new int[k];
+		for(int row = 0; row < numInstances; row++){
+			int count = clusters(row, clusters);
+			for(int c = 0; c < count; c++)
+				result.add(row, renumbered[clusters[c]]);
+		}
+		return result;
+	}
+
+	/**
+	 * Get the number of instances in some boundary
+	 * @return the number of instances assigned to more than one cluster
+	 */
+	public int boundary(){
+		int result = 0;
+		for(int row = 0; row < numInstances; row++)
+			if(count(row) > 1)
+				result++;
+		return result;
+	}
+
+	/**
+	 * Checks whether the given assignment assigns every instance to the same clusters
+	 * @param m, another assignment
+	 * @return true if the assignments have the same size and the same bitmasks
+	 */
+	public boolean sameAssignment(Memberships m){
+		return numInstances == m.numInstances && k == m.k && Arrays.equals(masks, m.masks);
+	}
+}
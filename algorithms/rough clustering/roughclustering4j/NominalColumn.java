@@ -0,0 +1,60 @@
+package roughclustering;
+
+import java.nio.IntBuffer;
+
+/**
+ * Implements a read-only column of a discrete attribute, holding the index of the value of each
+ * instance (-1 for missing values). As a {@link NumericColumn} it is backed either by an array or by
+ * the segments of a memory-mapped file, which are read in place
+ * @author Andrea Campagner
+ *
+ */
+public final class NominalColumn {
+	private final int[] values;
+	private final IntBuffer[] segments;
+	private final int shift;
+	private final int mask;
+	private final int size;
+
+	/**
+	 * Construct a column backed by the given array, which is shared and must not be modified
+	 * @param values, the values
+	 */
+	public NominalColumn(int[] values){
+		this.values = values;
+		segments = null;
+		shift = 0;
+		mask = 0;
+		size = values.length;
+	}
+
+	/**
+	 * Construct a column backed by the given buffers, each holding 2^shift values except the last one
+	 * @param segments, the buffers
+	 * @param shift, base 2 logarithm of the number of values of a segment
+	 * @param size, number of values
+	 */
+	NominalColumn(IntBuffer[] segments, int shift, int size){
+		values = null;
+		this.segments = segments;
+		this.shift = shift;
+		mask = (1 << shift) - 1;
+		this.size = size;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Get the index of the value of the given instance, reading the buffers with absolute gets
+	 * so that the column can be read concurrently
+	 * @param row, index of the instance
+	 * @return the index of the value, -1 if it is missing
+	 */
+	public int get(int row){
+		if(values != null)
+			return values[row];
+		return segments[row >>> shift].get(row & mask);
+	}
+}
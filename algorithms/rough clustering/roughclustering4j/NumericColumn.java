@@ -0,0 +1,60 @@
+package roughclustering;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Implements a read-only column of doubles, backed either by an array or by the segments of a
+ * memory-mapped file: values are read in place from the mapping, so that a mapped column is never
+ * copied to the heap
+ * @author Andrea Campagner
+ *
+ */
+public final class NumericColumn {
+	private final double[] values;
+	private final DoubleBuffer[] segments;
+	private final int shift;
+	private final int mask;
+	private final int size;
+
+	/**
+	 * Construct a column backed by the given array, which is shared and must not be modified
+	 * @param values, the values
+	 */
+	public NumericColumn(double[] values){
+		this.values = values;
+		segments = null;
+		shift = 0;
+		mask = 0;
+		size = values.length;
+	}
+
+	/**
+	 * Construct a column backed by the given buffers, each holding 2^shift values except the last one
+	 * @param segments, the buffers
+	 * @param shift, base 2 logarithm of the number of values of a segment
+	 * @param size, number of values
+	 */
+	NumericColumn(DoubleBuffer[] segments, int shift, int size){
+		values = null;
+		this.segments = segments;
+		this.shift = shift;
+		mask = (1 << shift) - 1;
+		this.size = size;
+	}
+
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Get the value of the given instance, reading the buffers with absolute gets
+	 * so that the column can be read concurrently
+	 * @param row, index of the instance
+	 * @return the value
+	 */
+	public double get(int row){
+		if(values != null)
+			return values[row];
+		return segments[row >>> shift].get(row & mask);
+	}
+}
@@ -6,21 +6,33 @@ import java.util.stream.Collectors;
 import weka.core.Instance;
 
 /**
- * Implements an orthopair
+ * Implements an orthopair.
+ * An orthopair built over an indexed universe (by an {@link Orthopartition}, or from a {@link BitOrthopair})
+ * is backed by the bitsets of its regions: copies, meet, join, the universe checks and the size queries
+ * are word-parallel and do not hash or copy instances. The HashSet getters are adapters: the first call
+ * of getN, getP, getBnd or of a setter converts the regions to sets, which can then be modified, and the
+ * orthopair is backed by the sets from then on
  * @author Andrea Campagner
  *
  */
 public class Orthopair {
+	//bitset regions, null once the orthopair is backed by the sets
+	private BitOrthopair bits = null;
+	//the regions: read-only views of the bitsets (built on first use) while bits is not null
 	private HashSet<Instance> N;
 	private HashSet<Instance> P;
 	private HashSet<Instance> Bnd;
-	
+
 	public Orthopair(Orthopair o){
-		P = new HashSet<Instance>(o.getP());
-		Bnd = new HashSet<Instance>(o.getBnd());
-		N = new HashSet<Instance>(o.getN());
+		if(o.bits() != null)
+			bits = new BitOrthopair(o.bits());
+		else{
+			P = new HashSet<Instance>(o.lower());
+			Bnd = new HashSet<Instance>(o.boundary());
+			N = new HashSet<Instance>(o.negative());
+		}
 	}
-	
+
 	public Orthopair(HashSet<Instance> n, HashSet<Instance> p, HashSet<Instance> bnd) throws Exception{
 		super();
 		N = n;
@@ -31,24 +43,122 @@ public class Orthopair {
 		P = p;
 		setBnd(bnd);
 	}
-	
+
+	/**
+	 * Construct an orthopair backed by the given bitset orthopair, which is not copied
+	 * @param o, a bitset orthopair
+	 */
+	public Orthopair(BitOrthopair o){
+		bits = o;
+	}
+
+	/**
+	 * Get the bitset regions of the orthopair
+	 * @return the bitset orthopair, not to be modified, or null if the orthopair is backed by sets
+	 */
+	synchronized BitOrthopair bits(){
+		return bits;
+	}
+
+	/**
+	 * Get the lower region for reading, without converting the orthopair to sets
+	 * @return the lower region, not to be modified
+	 */
+	synchronized HashSet<Instance> lower(){
+		if(P == null)
+			P = bits.getIndexedUniverse().toSet(bits.getP());
+		return P;
+	}
+
+	/**
+	 * Get the boundary for reading, without converting the orthopair to sets
+	 * @return the boundary, not to be modified
+	 */
+	synchronized HashSet<Instance> boundary(){
+		if(Bnd == null)
+			Bnd = bits.getIndexedUniverse().toSet(bits.getBnd());
+		return Bnd;
+	}
+
+	/**
+	 * Get the negative region for reading, without converting the orthopair to sets
+	 * @return the negative region, not to be modified
+	 */
+	synchronized HashSet<Instance> negative(){
+		if(N == null)
+			N = bits.getIndexedUniverse().toSet(bits.getN());
+		return N;
+	}
+
+	/**
+	 * Convert the orthopair to sets, which are then handed out and can be modified
+	 */
+	private synchronized void detach(){
+		if(bits != null){
+			lower();
+			boundary();
+			negative();
+			bits = null;
+		}
+	}
+
+	/**
+	 * Get the bitset regions of both orthopairs, if they are backed by the same indexed universe
+	 * @return the two bitset orthopairs, or null
+	 */
+	private BitOrthopair[] bits(Orthopair o){
+		BitOrthopair a = bits(), b = o.bits();
+		if(a == null || b == null || a.getIndexedUniverse() != b.getIndexedUniverse())
+			return null;
+		return new BitOrthopair[]{a, b};
+	}
+
 	public int getUniverseSize() {
+		BitOrthopair b = bits();
+		if(b != null)
+			return b.getUniverseSize();
 		return P.size() + Bnd.size() + N.size();
 	}
-	
+
 	public HashSet<Instance> getUniverse(){
 		HashSet<Instance> result = new HashSet<Instance>();
-		result.addAll(P);
-		result.addAll(N);
-		result.addAll(Bnd);
+		result.addAll(lower());
+		result.addAll(negative());
+		result.addAll(boundary());
 		return result;
 	}
 
+	/**
+	 * Checks whether this orthopair and the given one are defined on the same universe
+	 * @param o, an orthopair
+	 * @return whether P, Bnd and N cover the same instances
+	 */
+	public boolean sameUniverse(Orthopair o){
+		BitOrthopair[] b = bits(o);
+		if(b != null)
+			return b[0].sameUniverse(b[1]);
+		return getUniverse().equals(o.getUniverse());
+	}
+
+	/**
+	 * Checks whether the regions of this orthopair cover exactly the given universe
+	 * @param universe, an indexed universe
+	 * @return whether the universe of the orthopair is the given one
+	 */
+	boolean isDefinedOn(Universe universe){
+		BitOrthopair b = bits();
+		if(b != null && b.getIndexedUniverse() == universe)
+			return b.getUniverseSize() == universe.size();
+		return universe.isUniverseOf(getUniverse());
+	}
+
 	public HashSet<Instance> getN() {
+		detach();
 		return N;
 	}
 
 	public void setN(HashSet<Instance> n) throws Exception {
+		detach();
 		HashSet<Instance> tmp1 = new HashSet<Instance>(n);
 		tmp1.retainAll(P);
 		HashSet<Instance> tmp2 = new HashSet<Instance>(n);
@@ -59,10 +169,12 @@ public class Orthopair {
 	}
 
 	public HashSet<Instance> getP() {
+		detach();
 		return P;
 	}
 
 	public void setP(HashSet<Instance> p) throws Exception{
+		detach();
 		HashSet<Instance> tmp1 = new HashSet<Instance>(p);
 		tmp1.retainAll(N);
 		HashSet<Instance> tmp2 = new HashSet<Instance>(p);
@@ -73,10 +185,12 @@ public class Orthopair {
 	}
 
 	public HashSet<Instance> getBnd() {
+		detach();
 		return Bnd;
 	}
 
 	public void setBnd(HashSet<Instance> bnd) throws Exception{
+		detach();
 		HashSet<Instance> tmp1 = new HashSet<Instance>(bnd);
 		tmp1.retainAll(P);
 		HashSet<Instance> tmp2 = new HashSet<Instance>(bnd);
@@ -85,7 +199,7 @@ public class Orthopair {
 			throw new Exception("The sets are non-disjoint");
 		Bnd = bnd;
 	}
-	
+
 	/**
 	 * Performs the join operation of the "truth" ordering
 	 * @param o, an orthopair
@@ -93,23 +207,26 @@ public class Orthopair {
 	 * @throws Exception - the orthopairs are defined on different universes
 	 */
 	public Orthopair union(Orthopair o) throws Exception{
+		BitOrthopair[] b = bits(o);
+		if(b != null)
+			return new Orthopair(b[0].union(b[1]));
 		if(!o.getUniverse().equals(getUniverse()))
 			throw new Exception("Different universes");
-		
+
 		Orthopair result = new Orthopair(this);
 		Orthopair tmp = new Orthopair(o);
-		
-		result.getN().retainAll(o.getN());
-		
+
+		result.getN().retainAll(o.negative());
+
 		result.getP().addAll(tmp.getP());
-		
+
 		result.getBnd().removeAll(result.getN());
 		tmp.getBnd().removeAll(result.getN());
 		result.getBnd().addAll(tmp.getBnd());
 		result.getBnd().removeAll(result.getP());
 		return result;
 	}
-	
+
 	/**
 	 * Performs the meet operation of the "truth" ordering
 	 * @param o, an orthopair
@@ -117,68 +234,119 @@ public class Orthopair {
 	 * @throws Exception - the orthopairs are defined on different universes
 	 */
 	public Orthopair intersect(Orthopair o) throws Exception{
+		BitOrthopair[] b = bits(o);
+		if(b != null)
+			return new Orthopair(b[0].intersect(b[1]));
 		if(!o.getUniverse().equals(getUniverse()))
 			throw new Exception("Different universes");
-		
+
 		Orthopair result = new Orthopair(this);
 		Orthopair tmp = new Orthopair(o);
-		
-		result.getP().retainAll(o.getP());
-		
+
+		result.getP().retainAll(o.lower());
+
 		result.getN().addAll(tmp.getN());
-		
+
 		result.getBnd().removeAll(result.getP());
 		tmp.getBnd().removeAll(result.getP());
 		result.getBnd().addAll(tmp.getBnd());
 		result.getBnd().removeAll(result.getN());
 		return result;
 	}
-	
+
+	/**
+	 * Checks whether this orthopair overlaps the given one, i.e. the upper region of this
+	 * orthopair meets the lower region of o or the lower region of this orthopair meets the
+	 * boundary of o
+	 * @param o, an orthopair
+	 * @return whether the orthopairs overlap
+	 */
+	public boolean overlaps(Orthopair o){
+		BitOrthopair[] b = bits(o);
+		if(b != null)
+			return b[0].overlaps(b[1]);
+		for(Instance x : o.lower())
+			if(lower().contains(x) || boundary().contains(x))
+				return true;
+		for(Instance x : o.boundary())
+			if(lower().contains(x))
+				return true;
+		return false;
+	}
+
 	/**
 	 * Compute the boundary-based uncertainty measure
 	 * @return the value of the boundary-based measure
 	 */
 	public double entropy(){
+		BitOrthopair b = bits();
+		if(b != null)
+			return b.entropy();
 		return ((double) Bnd.size())/this.getUniverseSize();
 	}
-	
+
 	/**
 	 * Compute the size of the lower region (i.e. P)
 	 * @return the size of the lower region
 	 */
 	public int getLowerSize(){
+		BitOrthopair b = bits();
+		if(b != null)
+			return b.getLowerSize();
 		return P.size();
 	}
-	
+
 	/**
 	 * Checks if the orthopair is empty (e.g. N == U)
 	 * @return whether the orthopair is empty
 	 */
 	public boolean isEmpty(){
+		BitOrthopair b = bits();
+		if(b != null)
+			return b.isEmpty();
 		return N.equals(getUniverse());
 	}
-	
+
 	/**
 	 * Compute the size of the upper region (i.e. P union Bnd)
 	 * @return the size of the upper region
 	 */
 	public int getUpperSize(){
+		BitOrthopair b = bits();
+		if(b != null)
+			return b.getUpperSize();
 		return P.size() + Bnd.size();
 	}
-	
+
 	public String toString(){
-		return P.toString() + "\n" + Bnd.toString() + "\n" + N.toString();
+		return lower().toString() + "\n" + boundary().toString() + "\n" + negative().toString();
 	}
-	
+
 	public String prettyPrint(int att){
 		String out = "";
-		out += P.stream().map((Instance i) -> i.value(att)).collect(Collectors.toList()).toString() + "\n";
-		out += Bnd.stream().map((Instance i) -> i.value(att)).collect(Collectors.toList()).toString() + "\n";
-		out += N.stream().map((Instance i) -> i.value(att)).collect(Collectors.toList()).toString();
+		out += lower().stream().map((Instance i) -> i.value(att)).collect(Collectors.toList()).toString() + "\n";
+		out += boundary().stream().map((Instance i) -> i.value(att)).collect(Collectors.toList()).toString() + "\n";
+		out += negative().stream().map((Instance i) -> i.value(att)).collect(Collectors.toList()).toString();
 		return out;
 	}
-	
+
+	/**
+	 * Convert this orthopair to the bitset representation over the given universe
+	 * @param universe, an indexed universe containing the instances of this orthopair
+	 * @return the corresponding bitset orthopair
+	 * @throws Exception - some instance does not belong to the universe
+	 */
+	public BitOrthopair toBitOrthopair(Universe universe) throws Exception{
+		BitOrthopair b = bits();
+		if(b != null && b.getIndexedUniverse() == universe)
+			return new BitOrthopair(b);
+		return new BitOrthopair(universe, this);
+	}
+
 	public boolean equals(Orthopair o){
-		return P.equals(o.getP()) && Bnd.equals(o.getBnd()) && N.equals(o.getN());
+		BitOrthopair[] b = bits(o);
+		if(b != null)
+			return b[0].sameRegions(b[1]);
+		return lower().equals(o.lower()) && boundary().equals(o.boundary()) && negative().equals(o.negative());
 	}
 }
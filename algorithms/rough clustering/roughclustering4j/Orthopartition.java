@@ -10,13 +10,31 @@ import weka.core.Instances;
 /**
  * Implements an orthopartition
  * Note that all constructors may fail, and throw an exception, if the orthopartition
- * is set to have no overlaps or if the orthopairs are not defined on the same universe
+ * is set to have no overlaps or if the orthopairs are not defined on the same universe.
+ * An orthopartition built from a {@link Memberships} assignment is stored in compact form, as the
+ * membership bitmask of each instance: the orthopairs are only materialized when the family is
+ * requested, the membership queries, the boundary sizes and the entropies are computed on the bitmasks.
+ * The orthopairs built from an assignment are backed by bitsets over the indexed universe, so that
+ * the universe and overlap checks, the meet and the boundary sizes are word-parallel.
+ * Otherwise the membership queries, the entropies and the purity use a {@link MembershipIndex} of the
+ * family. The index is only kept while the family is owned by the orthopartition (built by a
+ * constructor from a list of assignments, or materialized from the compact form): a family passed
+ * to a constructor or to setFamily, extended by addOrthopair or returned by getFamily can be modified
+ * by the caller, so its index and its universe are rebuilt on each use
  * @author Andrea Campagner
  *
  */
 public class Orthopartition {
 	private ArrayList<Orthopair> family;
+	private Universe universe = null;
 	boolean overlap;
+	//compact form, null once the family is materialized
+	private Memberships memberships = null;
+	private int numOrthopairs;
+	//instance -> clusters index, null until first used
+	private MembershipIndex index = null;
+	//whether the family is only reachable from the orthopartition, so that its index can be kept
+	private boolean owned = false;
 	
 	/**
 	 * Construct an orthopartition given a universe a list of lists representation of the orthopartition
@@ -25,33 +43,88 @@ public class Orthopartition {
 	 * @throws Exception
 	 */
 	public Orthopartition(ArrayList<ArrayList<Integer>> list, Instances data) throws Exception{
+		this(list, new Universe(data));
+	}
+	
+	/**
+	 * Construct an orthopartition given an indexed universe and a list of lists representation of the orthopartition
+	 * @param list, list of lists of instances
+	 * @param universe, indexed universe of the dataset
+	 * @throws Exception
+	 */
+	public Orthopartition(ArrayList<ArrayList<Integer>> list, Universe universe) throws Exception{
 		overlap = false;
+		if(list.size() > universe.size())
+			throw new Exception("The assignment is not defined on the universe");
 		int numOrthopairs = -1;
 		ArrayList<Orthopair> tmp = new ArrayList<Orthopair>();
 		for(ArrayList<Integer> l : list)
 			for(Integer i : l)
 				if(i > numOrthopairs)
 					numOrthopairs = i;
+		long[][] p = new long[numOrthopairs + 1][universe.words()];
+		long[][] bnd = new long[numOrthopairs + 1][universe.words()];
+		long[][] n = new long[numOrthopairs + 1][universe.words()];
 		//Assigns the elements in the overlaps to the boundaries
-		for(int i = 0; i <= numOrthopairs; i++){
-			final int fi = i;
-			HashSet<Instance> p = new HashSet<Instance>();
-			HashSet<Instance> bnd = new HashSet<Instance>();
-			HashSet<Instance> n = new HashSet<Instance>();
-			for(int j = 0; j < list.size(); j++){
-				if(list.get(j).contains(fi))
-					if(list.get(j).size() == 1)
-						p.add(data.get(j));
-					else
-						bnd.add(data.get(j));
-				else
-					n.add(data.get(j));	
-			}
-			tmp.add(new Orthopair(n, p, bnd));
+		for(int j = 0; j < list.size(); j++){
+			ArrayList<Integer> l = list.get(j);
+			for(int i = 0; i <= numOrthopairs; i++)
+				Bitsets.set(n[i], j);
+			for(Integer i : l)
+				if(i >= 0){
+					Bitsets.clear(n[i], j);
+					Bitsets.set((l.size() == 1)? p[i] : bnd[i], j);
+				}
 		}
+		for(int i = 0; i <= numOrthopairs; i++)
+			tmp.add(new Orthopair(new BitOrthopair(universe, n[i], p[i], bnd[i])));
 		setFamily(tmp);
+		this.universe = universe;
+		owned = true;
 	}
-	
+
+	/**
+	 * Construct an orthopartition in compact form given an indexed universe and the bitmask
+	 * representation of the orthopartition, which is copied
+	 * @param memberships, rough assignment of the instances of the universe
+	 * @param universe, indexed universe of the dataset
+	 * @throws Exception - the assignment is not defined on the universe
+	 */
+	public Orthopartition(Memberships memberships, Universe universe) throws Exception{
+		if(memberships.numInstances() != universe.size())
+			throw new Exception("The assignment is not defined on the universe");
+		overlap = false;
+		this.memberships = new Memberships(memberships);
+		numOrthopairs = memberships.numClusters();
+		this.universe = universe;
+		owned = true;
+	}
+
+	/**
+	 * Build the orthopairs of the compact form, the bitset regions of all the orthopairs are built
+	 * in a single pass over the instances
+	 * @return the orthopairs
+	 * @throws Exception
+	 */
+	private ArrayList<Orthopair> materialize() throws Exception{
+		long[][] p = new long[numOrthopairs][universe.words()];
+		long[][] bnd = new long[numOrthopairs][universe.words()];
+		long[][] n = new long[numOrthopairs][universe.words()];
+		//Assigns the elements in the overlaps to the boundaries
+		for(int j = 0; j < memberships.numInstances(); j++){
+			boolean lower = memberships.count(j) == 1;
+			for(int i = 0; i < numOrthopairs; i++)
+				if(memberships.contains(j, i))
+					Bitsets.set(lower? p[i] : bnd[i], j);
+				else
+					Bitsets.set(n[i], j);
+		}
+		ArrayList<Orthopair> tmp = new ArrayList<Orthopair>();
+		for(int i = 0; i < numOrthopairs; i++)
+			tmp.add(new Orthopair(new BitOrthopair(universe, n[i], p[i], bnd[i])));
+		return tmp;
+	}
+
 	/**
 	 * Support method to convert a list of ints in a list of lists of integers
 	 * @param list, a list of integers
@@ -85,23 +158,15 @@ public class Orthopartition {
 	public Orthopartition(ArrayList<Orthopair> family, boolean overlap) throws Exception{
 		super();
 		this.overlap = overlap;
-		HashSet<Instance> universe = family.get(0).getUniverse();
 		for(Orthopair o : family)
-			if(!o.getUniverse().equals(universe))
+			if(!o.sameUniverse(family.get(0)))
 				throw new Exception ("Not all orthopairs are defined on the same universe");
 		if(!overlap){
 			//Check if there is an overlap
 			for(Orthopair o : family){
 				for(Orthopair p: family){
-					if(o != p){
-						Orthopair tmp1 = new Orthopair(o);
-						tmp1.getP().addAll(tmp1.getBnd());
-						tmp1.getP().retainAll(p.getP()) ;
-						Orthopair tmp2 = new Orthopair(o);
-						tmp2.getP().retainAll(p.getBnd());
-						if(!tmp1.getP().isEmpty() || !tmp2.getP().isEmpty())
-							throw new Exception("Orthopairs overlap");
-					}
+					if(o != p && o.overlaps(p))
+						throw new Exception("Orthopairs overlap");
 				}
 			}
 		}
@@ -119,16 +184,9 @@ public class Orthopartition {
 		overlap = false;
 		for(Orthopair o: family){
 			for(Orthopair p : family)
-				if(o != p){
-					Orthopair tmp1 = new Orthopair(o);
-					tmp1.getP().addAll(tmp1.getBnd());
-					tmp1.getP().retainAll(p.getP()) ;
-					Orthopair tmp2 = new Orthopair(o);
-					tmp2.getP().retainAll(p.getBnd());
-					if(!tmp1.getP().isEmpty() || !tmp2.getP().isEmpty()){
-						overlap = true;
-						break;
-					}
+				if(o != p && o.overlaps(p)){
+					overlap = true;
+					break;
 				}
 			if(overlap)
 				break;
@@ -142,47 +200,77 @@ public class Orthopartition {
 	 * @return whether insertion was successful
 	 */
 	public boolean addOrthopair(Orthopair o){
-		if(getFamily().isEmpty()){
-			getFamily().add(o);
+		if(family().isEmpty()){
+			family().add(o);
+			index = null;
+			owned = false;
 			return true;
-		}else if(getFamily().get(0).getUniverse().equals(o.getUniverse())){
+		}else if(family().get(0).sameUniverse(o)){
 			if(!overlap){
-				for(Orthopair p : getFamily()){
-					Orthopair tmp1 = new Orthopair(o);
-					tmp1.getP().addAll(tmp1.getBnd());
-					Orthopair tmp2 = new Orthopair(o);
-					if(tmp1.getP().retainAll(p.getP()) || tmp2.getP().retainAll(p.getBnd()))
+				for(Orthopair p : family()){
+					if(rejects(o, p))
 						return false;
 				}
-				getFamily().add(o);
+				family().add(o);
+				index = null;
+				owned = false;
 				return true;
 			}else{
-				getFamily().add(o);
+				family().add(o);
+				index = null;
+				owned = false;
 				return true;
 			}
 		}
 		return false;
 	}
 	
+	/**
+	 * Checks whether addOrthopair rejects o because of p, i.e. the upper region of o is not contained
+	 * in the lower region of p or the lower region of o is not contained in the boundary of p
+	 * @param o, the new orthopair
+	 * @param p, an orthopair of the family
+	 * @return whether o is rejected
+	 */
+	private static boolean rejects(Orthopair o, Orthopair p){
+		BitOrthopair a = o.bits(), b = p.bits();
+		if(a != null && b != null && a.getIndexedUniverse() == b.getIndexedUniverse())
+			return !Bitsets.isSubset(a.getP(), b.getP()) || !Bitsets.isSubset(a.getBnd(), b.getP())
+					|| !Bitsets.isSubset(a.getP(), b.getBnd());
+		return !p.lower().containsAll(o.lower()) || !p.lower().containsAll(o.boundary())
+				|| !p.boundary().containsAll(o.lower());
+	}
+	
 	/**
 	 * Compute the total number of elements in the boundaries
 	 * @return the number of elements in the boundaries
 	 */
 	public int totalBoundary(){
-		return getFamily().stream().map(o -> o.getBnd()).reduce((b1, b2) -> {
-			HashSet<Instance> t = new HashSet<Instance>(b1);
-			t.addAll(b2);
-			return t;
-		}).get().size();
+		if(memberships != null)
+			return memberships.boundary();
+		return totalBoundary(family());
 	}
 	
 	/**
-	 * Compute the total number of elements in the boundaries for the given list
+	 * Compute the total number of elements in the boundaries for the given list, as the cardinality
+	 * of the union of the bitset boundaries if all the orthopairs are backed by the same indexed universe
 	 * @param l, a collection of orthopairs
 	 * @return the number of elements in the boundaries
 	 */
 	public static int totalBoundary(ArrayList<Orthopair> l){
-		return l.stream().map(o -> o.getBnd()).reduce((b1, b2) -> {
+		BitOrthopair first = l.isEmpty()? null : l.get(0).bits();
+		long[] union = (first == null)? null : new long[first.getBnd().length];
+		for(int i = 0; union != null && i < l.size(); i++){
+			BitOrthopair b = l.get(i).bits();
+			if(b == null || b.getIndexedUniverse() != first.getIndexedUniverse())
+				union = null;
+			else
+				for(int w = 0; w < union.length; w++)
+					union[w] |= b.getBnd()[w];
+		}
+		if(union != null)
+			return Bitsets.cardinality(union);
+		return l.stream().map(o -> o.boundary()).reduce((b1, b2) -> {
 			HashSet<Instance> t = new HashSet<Instance>(b1);
 			t.addAll(b2);
 			return t;
@@ -195,50 +283,7 @@ public class Orthopartition {
 	 * @throws Exception
 	 */
 	public double lowerEntropy() throws Exception{
-		double lowerEntropy = 0;
-		ArrayList<Orthopair> tmp = new ArrayList<Orthopair>();
-		for(Orthopair o : getFamily()){
-			tmp.add(new Orthopair(o));
-		}
-		if(!overlap){
-			while(Orthopartition.totalBoundary(tmp) != 0){
-				Orthopair max = null;
-				for(Orthopair o : tmp){
-					if(max == null && o.entropy() > 0)
-						max = o;
-					if(o.entropy() > 0 && o.getUpperSize() > max.getUpperSize())
-						max = o;
-				}
-				max.getP().addAll(max.getBnd());
-				max.setBnd(new HashSet<Instance>());
-				for(Orthopair o : tmp){
-					if(o != max){
-						o.getBnd().removeAll(max.getP());
-						o.getN().addAll(max.getP());
-					}
-				}
-			}
-			for(Orthopair o : tmp)
-				for(Orthopair p : tmp)
-					if(o != p)
-						lowerEntropy += o.getLowerSize()*p.getLowerSize();
-		} else{
-			while(Orthopartition.totalBoundary(tmp) != 0){
-				for(Orthopair o : tmp){
-					o.getP().addAll(o.getBnd());
-					o.setBnd(new HashSet<Instance>());
-				}
-			}
-			for(Orthopair o : tmp)
-				for(Orthopair p : tmp)
-					if(o != p){
-						Orthopair to = new Orthopair(o);
-						Orthopair tp = new Orthopair(p);
-						to.getP().removeAll(to.intersect(tp).getP());
-						lowerEntropy += to.getLowerSize()*tp.getLowerSize();
-					}
-		}
-		return lowerEntropy/(tmp.get(0).getUniverseSize()*tmp.get(0).getUniverseSize());
+		return getIndex().lowerEntropy();
 	}
 	
 	/**
@@ -247,41 +292,7 @@ public class Orthopartition {
 	 * @throws Exception
 	 */
 	public double upperEntropy() throws Exception{
-		double upperEntropy = 0;
-		ArrayList<Orthopair> tmp = new ArrayList<Orthopair>();
-		for(Orthopair o : getFamily()){
-			tmp.add(new Orthopair(o));
-		}
-			while(Orthopartition.totalBoundary(tmp) != 0){
-				Orthopair min = null;
-				for(Orthopair o : tmp){
-					if(min == null && o.entropy() > 0)
-						min = o;
-					if(o.entropy() > 0 && o.getLowerSize() < min.getLowerSize())
-						min = o;
-				}
-				Instance i = (Instance) min.getBnd().toArray()[0];
-				min.getP().add(i);
-				min.getBnd().remove(i);
-				for(Orthopair o : tmp){
-					if(o != min){
-						o.getBnd().removeAll(min.getP());
-						o.getN().addAll(min.getP());
-					}
-				}
-			}
-			for(Orthopair o : tmp)
-				for(Orthopair p : tmp)
-					if(o != p)
-						if(!overlap)
-							upperEntropy += o.getLowerSize()*p.getLowerSize();
-						else{
-							Orthopair to = new Orthopair(o);
-							Orthopair tp = new Orthopair(p);
-							to.getP().removeAll(to.intersect(tp).getP());
-							upperEntropy += to.getLowerSize()*tp.getLowerSize();
-						}
-		return upperEntropy/(tmp.get(0).getUniverseSize()*tmp.get(0).getUniverseSize());
+		return getIndex().upperEntropy();
 	}
 	
 	/**
@@ -292,13 +303,18 @@ public class Orthopartition {
 	 */
 	public Orthopartition meet(Orthopartition pi) throws Exception{
 		ArrayList<Orthopair> tmp = new ArrayList<Orthopair>();
-		for(Orthopair o : getFamily()){
-			for(Orthopair p : pi.getFamily())
-				if(!o.intersect(p).isEmpty())
-					tmp.add(o.intersect(p));
+		for(Orthopair o : family()){
+			for(Orthopair p : pi.family()){
+				Orthopair m = o.intersect(p);
+				if(!m.isEmpty())
+					tmp.add(m);
+			}
 		}
 		boolean overlap = this.overlap || pi.overlap;
-		return new Orthopartition(tmp, overlap);
+		Orthopartition result = new Orthopartition(tmp, overlap);
+		result.universe = universe;
+		result.owned = owned;
+		return result;
 	}
 	
 	/**
@@ -308,10 +324,24 @@ public class Orthopartition {
 	 * @throws Exception
 	 */
 	public double mutualInformation(Orthopartition pi) throws Exception{
+		return mutualInformation(pi.getIndex(), pi.getUniverse());
+	}
+	
+	/**
+	 * Compute the mutual information between this orthopartition and the orthopartition
+	 * described by the given membership index
+	 * @param pi, membership index of another orthopartition
+	 * @param universe, indexed universe of pi
+	 * @return the value of the mutual information
+	 * @throws Exception - the orthopartitions are defined on different universes
+	 */
+	public double mutualInformation(MembershipIndex pi, Universe universe) throws Exception{
 		double result = 0;
-		double result1 = (this.lowerEntropy() + this.upperEntropy())/2;
+		MembershipIndex a = getIndex();
+		double result1 = (a.lowerEntropy() + a.upperEntropy())/2;
 		double result2 = (pi.lowerEntropy() + pi.upperEntropy())/2;
-		Orthopartition m = this.meet(pi);
+		//The entropies of the meet are computed from the contingency table, without building the meet
+		MembershipIndex m = a.meet(pi, align(universe));
 		result = result1 + result2 - (m.lowerEntropy() + m.upperEntropy())/2;
 		if(result1 > result2)
 			result /= result1;
@@ -320,15 +350,40 @@ public class Orthopartition {
 		return result;
 	}
 	
+	/**
+	 * Compute the index in the given universe of each instance of the universe of this orthopartition
+	 * @param v, an indexed universe
+	 * @return the indices, null if the two universes are indexed in the same order
+	 * @throws Exception - the universes are different
+	 */
+	private int[] align(Universe v) throws Exception{
+		Universe u = getUniverse();
+		if(u == v)
+			return null;
+		if(u.size() != v.size())
+			throw new Exception("Different universes");
+		int[] map = new int[u.size()];
+		boolean identity = true;
+		for(int i = 0; i < map.length; i++){
+			map[i] = v.indexOf(u.get(i));
+			if(map[i] < 0)
+				throw new Exception("Different universes");
+			identity &= (map[i] == i);
+		}
+		return identity? null : map;
+	}
+	
 	/**
 	 * Checks if the given instance is in boundary
 	 * @param i, instance
 	 * @return whether the given instance is in a boundary
 	 */
 	public boolean inBoundary(Instance i) {
+		if(memberships != null || queryIndex() != null)
+			return numBoundaries(i) > 0;
 		boolean result = false;
-		for(Orthopair o : getFamily()) {
-			if(o.getBnd().contains(i)) {
+		for(Orthopair o : family()) {
+			if(o.boundary().contains(i)) {
 				result = true;
 				break;
 			}
@@ -342,41 +397,74 @@ public class Orthopartition {
 	 * @return the number of boundaries for the given instance
 	 */
 	public int numBoundaries(Instance i){
+		if(memberships != null){
+			int row = universe.indexOf(i);
+			int count = (row < 0)? 0 : memberships.count(row);
+			return (count > 1)? count : 0;
+		}
+		MembershipIndex m = queryIndex();
+		if(m != null){
+			int row = getUniverse().indexOf(i);
+			return (row < 0)? 0 : m.numBoundaries(row);
+		}
 		int result = 0;
-		for(Orthopair o : getFamily())
-			if(o.getBnd().contains(i))
+		for(Orthopair o : family())
+			if(o.boundary().contains(i))
 				result++;
 		return result;
 	}
 	
 	
 	/**
-	 * Compute the purity between this orthopartition and the given one
+	 * Compute the purity between this orthopartition and the given one, from the sparse counts of
+	 * the instances of each cluster of this orthopartition in the lower regions of the other: a
+	 * boundary instance counts as 1/(number of its boundaries). The fractions are summed in the
+	 * order of the instances
 	 * @param op, another orthopartition
 	 * @return the value of the purity
-	 * @throws Exception
+	 * @throws Exception - the orthopartitions are defined on different universes
 	 */
 	public double purity(Orthopartition op) throws Exception{
+		MembershipIndex a = getIndex();
+		MembershipIndex b = op.getIndex();
+		int[] map = align(op.getUniverse());
+		double[] size = new double[b.numClusters()];
+		IntList touched = new IntList();
 		double result = 0;
-		for(Orthopair o : getFamily()){
+		for(int j = 0; j < a.numClusters(); j++){
+			for(int e = 0; e < a.lowerSize(j); e++)
+				count(b, a.lowerInstance(j, e), map, 1, size, touched);
+			for(int e = 0; e < a.boundarySize(j); e++){
+				int i = a.boundaryInstance(j, e);
+				count(b, i, map, 1.0/a.numBoundaries(i), size, touched);
+			}
 			double iSize = 0;
-			for(Orthopair p : op.getFamily()){
-				double size = o.intersect(p).getLowerSize();
-				for(Instance i : o.getBnd())
-					if(p.getP().contains(i)){
-						size += ((double) 1.0/numBoundaries(i));
-					}
-				if(size > iSize)
-					iSize = size;
+			for(int t = 0; t < touched.size(); t++){
+				iSize = Math.max(iSize, size[touched.get(t)]);
+				size[touched.get(t)] = 0;
 			}
+			touched.clear();
 			result += iSize;
 		}
-		return result/op.getFamily().get(0).getUniverseSize();
+		return result/op.getUniverse().size();
+	}
+
+	/**
+	 * Add the weight of an instance to the counts of the lower regions of b containing it
+	 */
+	private static void count(MembershipIndex b, int i, int[] map, double weight, double[] size, IntList touched){
+		int x = (map == null)? i : map[i];
+		for(int f = 0; f < b.numLower(x); f++){
+			int c = b.lowerCluster(x, f);
+			if(size[c] == 0)
+				touched.add(c);
+			size[c] += weight;
+		}
 	}
 	
 	public String toString(){
 		String result = "";
-		for(Orthopair o : getFamily())
+		for(Orthopair o : family())
 			result += o.toString() + "\n\n";
 		return result;
 	}
@@ -388,18 +476,132 @@ public class Orthopartition {
 	 */
 	public ArrayList<Integer> inWhich(Instance x){
 		ArrayList<Integer> r = new ArrayList<Integer>();
-		for(int i = 0; i < getFamily().size(); i++)
-			if(getFamily().get(i).getP().contains(x) || getFamily().get(i).getBnd().contains(x))
+		if(memberships != null){
+			int row = universe.indexOf(x);
+			for(int i = 0; row >= 0 && i < numOrthopairs; i++)
+				if(memberships.contains(row, i))
+					r.add(i);
+			return r;
+		}
+		MembershipIndex m = queryIndex();
+		if(m != null){
+			//merge the clusters of the lower regions and of the boundaries, both in increasing order
+			int row = getUniverse().indexOf(x);
+			int e = 0, f = 0;
+			int numLower = (row < 0)? 0 : m.numLower(row), numBoundaries = (row < 0)? 0 : m.numBoundaries(row);
+			while(e < numLower || f < numBoundaries)
+				if(f == numBoundaries || (e < numLower && m.lowerCluster(row, e) < m.boundaryCluster(row, f)))
+					r.add(m.lowerCluster(row, e++));
+				else
+					r.add(m.boundaryCluster(row, f++));
+			return r;
+		}
+		for(int i = 0; i < family().size(); i++)
+			if(family().get(i).lower().contains(x) || family().get(i).boundary().contains(x))
 					r.add(i);
 		return r;
 	}
 
+	/**
+	 * Get the orthopairs of the orthopartition, materializing them if the orthopartition is in compact
+	 * form: the family can be modified, so the compact form is discarded and the index is no longer kept
+	 * @return the orthopairs
+	 */
 	public ArrayList<Orthopair> getFamily() {
+		ArrayList<Orthopair> result = family();
+		owned = false;
+		index = null;
+		return result;
+	}
+
+	/**
+	 * Get the orthopairs of the orthopartition for reading, materializing them if the orthopartition
+	 * is in compact form
+	 * @return the orthopairs, not to be modified
+	 */
+	ArrayList<Orthopair> family() {
+		if(memberships != null){
+			try{
+				family = materialize();
+			}catch(Exception e){
+				//the regions built from an assignment are always disjoint
+				throw new IllegalStateException(e);
+			}
+			memberships = null;
+		}
 		return family;
 	}
 
 	public void setFamily(ArrayList<Orthopair> family) {
 		this.family = family;
+		this.universe = null;
+		memberships = null;
+		index = null;
+		owned = false;
+	}
+
+	/**
+	 * Get the membership index of the orthopartition, built on first use if the family is owned
+	 * by the orthopartition, otherwise on each use
+	 * @return the membership index
+	 * @throws Exception - the orthopairs are not defined on the universe of the orthopartition
+	 */
+	MembershipIndex getIndex() throws Exception{
+		if(!owned)
+			return new MembershipIndex(this);
+		if(index == null)
+			index = new MembershipIndex(this);
+		return index;
+	}
+
+	/**
+	 * Get the membership index for the membership queries
+	 * @return the membership index, null if the orthopairs are not defined on a common universe
+	 */
+	private MembershipIndex queryIndex(){
+		try{
+			return getIndex();
+		}catch(Exception e){
+			//the queries scan the orthopairs
+			return null;
+		}
+	}
+
+	/**
+	 * Get the number of orthopairs, without materializing them
+	 * @return the number of orthopairs
+	 */
+	public int numOrthopairs(){
+		return (memberships != null)? numOrthopairs : family.size();
+	}
+
+	/**
+	 * Get the compact form of the orthopartition
+	 * @return the membership bitmasks of the instances of the universe, null if the family is materialized
+	 */
+	Memberships getMemberships(){
+		return memberships;
+	}
+	
+	/**
+	 * Get the indexed universe of the orthopartition: the dataset when the orthopartition is built
+	 * from a list of assignments, otherwise the universe of the first orthopair (its indexed universe
+	 * if it is backed by bitsets covering all of it), indexed on first use.
+	 * If the family is not owned by the orthopartition the universe is checked against the first
+	 * orthopair, and indexed again if they differ
+	 * @return the indexed universe
+	 */
+	public Universe getUniverse() {
+		if(universe != null && !owned && !family.isEmpty() && !family.get(0).isDefinedOn(universe))
+			universe = null;
+		if(universe == null){
+			BitOrthopair b = family.get(0).bits();
+			if(b != null && family.get(0).isDefinedOn(b.getIndexedUniverse()))
+				universe = b.getIndexedUniverse();
+			else
+				universe = new Universe(family.get(0).getUniverse());
+		}
+		return universe;
 	}
 		
 }
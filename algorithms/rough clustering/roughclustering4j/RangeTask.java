@@ -0,0 +1,43 @@
+package roughclustering;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join task applying a body to the index range [from, to), the range is split
+ * in halves until it is smaller than the grain. Each index is processed exactly once,
+ * so bodies writing only to per-index slots produce the same output as a sequential loop
+ * @author Andrea Campagner
+ *
+ */
+final class RangeTask extends RecursiveAction {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Body of a range task, applied to disjoint sub-ranges
+	 */
+	interface Body {
+		void apply(int from, int to);
+	}
+
+	private final Body body;
+	private final int from;
+	private final int to;
+	private final int grain;
+
+	RangeTask(Body body, int from, int to, int grain){
+		this.body = body;
+		this.from = from;
+		this.to = to;
+		this.grain = Math.max(1, grain);
+	}
+
+	@Override
+	protected void compute(){
+		if(to - from <= grain){
+			body.apply(from, to);
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		invokeAll(new RangeTask(body, from, mid, grain), new RangeTask(body, mid, to, grain));
+	}
+}
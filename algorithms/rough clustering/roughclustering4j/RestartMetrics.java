@@ -0,0 +1,80 @@
+package roughclustering;
+
+/**
+ * Implements the metrics of a restart of a rough clusterer: number of iterations, reason why the
+ * restart ended, elapsed time, bytes allocated and DB-index of the resulting model
+ * @author Andrea Campagner
+ *
+ */
+public class RestartMetrics {
+
+	private final int restart;
+	private final long seed;
+	private final int iterations;
+	private final RoughCentroidClusterer.StopReason stopReason;
+	private final long nanos;
+	private final long allocatedBytes;
+	private final double db;
+
+	RestartMetrics(int restart, long seed, int iterations, RoughCentroidClusterer.StopReason stopReason,
+			long nanos, long allocatedBytes, double db){
+		this.restart = restart;
+		this.seed = seed;
+		this.iterations = iterations;
+		this.stopReason = stopReason;
+		this.nanos = nanos;
+		this.allocatedBytes = allocatedBytes;
+		this.db = db;
+	}
+
+	public int getRestart() {
+		return restart;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * Get the reason why the restart ended
+	 * @return the stop reason, null for clusterers without stop criteria
+	 */
+	public RoughCentroidClusterer.StopReason getStopReason() {
+		return stopReason;
+	}
+
+	/**
+	 * Get the time spent in the restart
+	 * @return the time in nanoseconds
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+
+	/**
+	 * Get the number of bytes allocated by the training thread during the restart (the
+	 * allocations of the parallel steps run by other threads are not counted)
+	 * @return the number of bytes, -1 if the JVM does not support the measurement
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * Get the DB-index of the model selected by the restart
+	 * @return the DB-index, NaN if not computed
+	 */
+	public double getDaviesBouldin() {
+		return db;
+	}
+
+	@Override
+	public String toString(){
+		return "restart " + restart + " (seed " + seed + "): " + iterations + " iterations, " + stopReason + ", "
+				+ nanos/1e6 + "ms, allocated=" + allocatedBytes + " db=" + db;
+	}
+}
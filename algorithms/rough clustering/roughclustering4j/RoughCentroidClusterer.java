@@ -0,0 +1,836 @@
+package roughclustering;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import roughclustering.IterationMetrics.Phase;
+
+/**
+ * Implements the training loop shared by the centroid-based rough clusterers
+ * (Rough KMeans and Rough KMedians), which only differ in the representative
+ * computed for the discrete attributes.
+ * The loop runs on the columnar view of the dataset
+ * @author Andrea Campagner
+ *
+ */
+public abstract class RoughCentroidClusterer extends RoughClusterer {
+
+	protected long seed = -1;
+	protected boolean stopOnStableMembership = true;
+	protected double centroidTolerance = 0;
+	protected double daviesBouldinTolerance = 0;
+	protected int iterationsRun = 0;
+	protected StopReason stopReason = null;
+	protected File spillDirectory = null;
+	protected MembershipFile memberships = null;
+	//set when a restart fails, the other restarts stop at their next iteration
+	private volatile boolean aborted = false;
+	
+	/**
+	 * The reason why the training of a restart ended
+	 */
+	public enum StopReason {
+		/** All the iterations were run */
+		MAX_ITERATIONS,
+		/** The lower and upper regions of the clusters did not change, the next iterations would not change them */
+		STABLE_MEMBERSHIP,
+		/** No representative moved more than the centroid tolerance */
+		CENTROID_SHIFT,
+		/** The DB-index decreased less than the DB tolerance */
+		DB_IMPROVEMENT
+	}
+	
+	public boolean isStopOnStableMembership() {
+		return stopOnStableMembership;
+	}
+
+	/**
+	 * Set whether a restart stops when the assignment of every instance is the same of the previous
+	 * iteration: the representatives and the weights are then the same too, so the result does not change
+	 * @param stopOnStableMembership, whether to stop on stable membership (default true)
+	 */
+	public void setStopOnStableMembership(boolean stopOnStableMembership) {
+		this.stopOnStableMembership = stopOnStableMembership;
+	}
+
+	public double getCentroidTolerance() {
+		return centroidTolerance;
+	}
+
+	/**
+	 * Set the largest distance between the old and the new value of every representative under
+	 * which a restart stops
+	 * @param centroidTolerance, tolerance on the movement of the representatives, 0 to disable (default)
+	 */
+	public void setCentroidTolerance(double centroidTolerance) {
+		this.centroidTolerance = centroidTolerance;
+	}
+
+	public double getDaviesBouldinTolerance() {
+		return daviesBouldinTolerance;
+	}
+
+	/**
+	 * Set the decrease of the DB-index between two iterations under which a restart stops
+	 * @param daviesBouldinTolerance, tolerance on the DB-index improvement, 0 to disable (default)
+	 */
+	public void setDaviesBouldinTolerance(double daviesBouldinTolerance) {
+		this.daviesBouldinTolerance = daviesBouldinTolerance;
+	}
+
+	/**
+	 * Get the number of iterations run by the selected restart
+	 * @return the number of iterations
+	 */
+	public int getIterationsRun() {
+		return iterationsRun;
+	}
+
+	/**
+	 * Get the reason why the selected restart ended
+	 * @return the stop reason, null if the clusterer was not built
+	 */
+	public StopReason getStopReason() {
+		return stopReason;
+	}
+
+	public File getSpillDirectory() {
+		return spillDirectory;
+	}
+
+	/**
+	 * Set the directory of the files of the rough assignments spilled by the out-of-core training
+	 * @param spillDirectory, the directory, null for the default temporary directory (default)
+	 */
+	public void setSpillDirectory(File spillDirectory) {
+		this.spillDirectory = spillDirectory;
+	}
+
+	/**
+	 * Get the rough assignment computed by the out-of-core training, deleted when the clusterer is built again
+	 * @return the assignment of the selected restart, null if the clusterer was not built on a chunked dataset
+	 */
+	public MembershipFile getMemberships() {
+		return memberships;
+	}
+
+	/**
+	 * Compute the representative value of a discrete attribute for a cluster from the statistics of its regions
+	 * @param stats, statistics of the regions of the clusters
+	 * @param j, index of the cluster
+	 * @param numAttr, index of the attribute to be considered
+	 * @param wu, upper region weight
+	 * @param wl, lower region weight
+	 * @return the representative value
+	 */
+	protected abstract double discreteRepresentative(CentroidStatistics stats, int j, int numAttr, 
+			double wu, double wl);
+
+	@Override
+	public void buildClusterer(Instances data) throws Exception{
+		buildClusterer(new ColumnarDataset(data));
+	}
+	
+	/**
+	 * Compute the rough clustering of a columnar dataset, the training runs on the columns
+	 * @param ds, columnar dataset
+	 * @throws Exception
+	 */
+	@Override
+	public void buildClusterer(Dataset ds) throws Exception{
+		discardMemberships();
+		kernel = new DistanceKernel(ds);
+		Universe universe = new Universe(ds);
+		Model[] models = new Model[restarts];
+		runRestarts(ds.numInstances(), (s, r) -> train(ds, universe, s, r), models);
+		Model best = best(models);
+		this.centroids = toInstances(best.centroids, ds.getHeader());
+		this.weights = best.weights;
+		this.o = best.clustering;
+		this.iterationsRun = best.iterationsRun;
+		this.stopReason = best.stopReason;
+	}
+	
+	/**
+	 * Compute the rough clustering of a dataset that does not fit in memory (out-of-core): each
+	 * iteration streams the chunks of the dataset, accumulates the statistics of the lower and upper
+	 * regions of the clusters and spills the assignment of the instances to a file, so that the memory
+	 * used is bounded by the chunk size and by k times the number of attributes, not by the number of
+	 * instances. The representatives, the DB-index and the stop reasons are the same of the training
+	 * in memory. The assignment of the selected restart is available from {@link #getMemberships()},
+	 * the orthopartition of the instances is not built (getClustering() returns null).
+	 * The attribute weights are not recomputed, since the reweighting needs the sorted columns of
+	 * the dataset, and the mini-batches are not used
+	 * @param data, chunked dataset
+	 * @throws Exception - the reweighting is enabled, or the dataset or the spilled assignments
+	 * cannot be read or written
+	 */
+	public void buildClusterer(ChunkedDataset data) throws Exception{
+		if(reweight)
+			throw new Exception("The attribute weights cannot be recomputed out-of-core, disable the reweighting");
+		discardMemberships();
+		kernel = new DistanceKernel(data);
+		Model[] models = new Model[restarts];
+		try{
+			runRestarts(data.numInstances(), (s, r) -> train(data, s, r), models);
+			Model best = best(models);
+			this.centroids = toInstances(best.centroids, data.getHeader());
+			this.weights = best.weights;
+			this.o = null;
+			this.iterationsRun = best.iterationsRun;
+			this.stopReason = best.stopReason;
+			this.memberships = best.memberships;
+		}finally{
+			//the assignments of the other restarts, or of the finished restarts if some restart failed, are deleted
+			for(Model m : models)
+				if(m != null && m.memberships != null && m.memberships != memberships)
+					m.memberships.close();
+		}
+	}
+	
+	/**
+	 * Delete the assignment spilled by the previous out-of-core training
+	 */
+	private void discardMemberships() throws IOException{
+		if(memberships != null)
+			memberships.close();
+		memberships = null;
+	}
+	
+	/**
+	 * The training of a restart
+	 */
+	private interface RestartTask {
+		Model train(long seed, int restart) throws Exception;
+	}
+	
+	/**
+	 * Run the restarts, concurrently if the clusterer is parallel. If a restart fails the restarts
+	 * not yet started are skipped, the running ones stop at their next iteration and are awaited,
+	 * so that the models of the finished restarts are available to the caller
+	 * @param numInstances, number of instances of the dataset
+	 * @param task, training of a restart
+	 * @param models, the models of the restarts, filled as the restarts finish
+	 * @throws Exception - the exception of the first failed restart
+	 */
+	private void runRestarts(int numInstances, RestartTask task, Model[] models) throws Exception{
+		long[] seeds = restartSeeds(seed, restarts);
+		aborted = false;
+		ForkJoinPool pool = getPool();
+		if(pool == null || restarts == 1){
+			for(int r = 0; r < restarts; r++)
+				models[r] = run(numInstances, seeds[r], r, task);
+		}else{
+			ArrayList<ForkJoinTask<Model>> tasks = new ArrayList<ForkJoinTask<Model>>();
+			for(int r = 0; r < restarts; r++){
+				final long s = seeds[r];
+				final int restart = r;
+				tasks.add(pool.submit(() -> aborted? null : run(numInstances, s, restart, task)));
+			}
+			Exception failure = null;
+			for(int r = 0; r < restarts; r++){
+				try{
+					models[r] = tasks.get(r).get();
+				}catch(ExecutionException e){
+					if(failure == null){
+						failure = (e.getCause() instanceof Exception)? (Exception) e.getCause() : e;
+						aborted = true;
+					}
+				}
+			}
+			if(failure != null)
+				throw failure;
+		}
+	}
+	
+	/**
+	 * Checks whether the restarts were aborted by the failure of another restart
+	 * @throws Exception - the restarts were aborted
+	 */
+	protected void checkAborted() throws Exception{
+		if(aborted)
+			throw new Exception("The restart was aborted by the failure of another restart");
+	}
+	
+	/**
+	 * Select the restart with the lowest DB-index, ties are resolved in favour of the first restart
+	 */
+	private static Model best(Model[] models){
+		Model best = models[0];
+		for(int r = 1; r < models.length; r++)
+			if(!Double.isNaN(models[r].db) && (Double.isNaN(best.db) || models[r].db < best.db))
+				best = models[r];
+		return best;
+	}
+	
+	/**
+	 * Derive the seeds of the restarts from the seed of the clusterer: the first restart uses
+	 * the given seed, the others use the values of a SplittableRandom initialized with it.
+	 * The seeds only depend on the seed and on the number of restarts, not on the threads
+	 * @param seed, seed of the clusterer
+	 * @param restarts, number of restarts
+	 * @return the seeds of the restarts
+	 */
+	protected static long[] restartSeeds(long seed, int restarts){
+		long[] seeds = new long[restarts];
+		SplittableRandom r = new SplittableRandom(seed);
+		seeds[0] = seed;
+		for(int i = 1; i < restarts; i++)
+			seeds[i] = r.nextLong();
+		return seeds;
+	}
+	
+	/**
+	 * Run a restart and notify the listeners of its metrics
+	 */
+	private Model run(int numInstances, long seed, int restart, RestartTask task) throws Exception{
+		ClusteringEvents.Restart event = new ClusteringEvents.Restart();
+		event.begin();
+		boolean observed = isObserved();
+		long start = observed? System.nanoTime() : 0;
+		long bytes = observed? IterationMetrics.allocatedBytes() : -1;
+		Model model = task.train(seed, restart);
+		if(observed){
+			long allocated = IterationMetrics.allocatedBytes();
+			fireRestartCompleted(new RestartMetrics(restart, seed, model.iterationsRun, model.stopReason, 
+					System.nanoTime() - start, (bytes < 0 || allocated < 0)? -1 : allocated - bytes, model.db));
+		}
+		if(event.shouldCommit()){
+			event.clusterer = getClass().getSimpleName();
+			event.restart = restart;
+			event.seed = seed;
+			event.instances = numInstances;
+			event.k = k;
+			event.iterations = model.iterationsRun;
+			event.boundary = (model.clustering == null)? model.boundary : model.clustering.totalBoundary();
+			event.db = model.db;
+			event.commit();
+		}
+		return model;
+	}
+	
+	/**
+	 * Run a single restart of the clusterer, the state of the restart is local so that
+	 * restarts can run concurrently
+	 * @param ds, columnar dataset
+	 * @param universe, indexed universe of the dataset
+	 * @param seed, seed of the restart
+	 * @param restart, index of the restart
+	 * @return the best model of the restart
+	 * @throws Exception
+	 */
+	protected Model train(Dataset ds, Universe universe, long seed, int restart) throws Exception{
+		//The assignments are written in place in a pool of buffers: the previous assignment is kept
+		//to detect a fixed point, and the best one is kept by the best model
+		Memberships[] buffers = new Memberships[3];
+		Memberships clustering = null;
+		Memberships previous = null;
+		Memberships bestClustering = null;
+		
+		//Set the cluster representatives
+		double[] weights = new double[ds.numAttributes()];
+		for(int i = 0; i < weights.length; i++)
+			weights[i] = 1.0/(ds.numAttributes() - 1);
+		double[][] centroids = setSeed(kernel, seed, weights);
+		Model best = new Model(copy(centroids), weights.clone(), null, Double.NaN);
+		AssignmentBounds bounds = useBounds? new AssignmentBounds(ds.numInstances(), k) : null;
+		CentroidStatistics stats = new CentroidStatistics(ds.getHeader(), k);
+		
+		//Foreach iteration
+		StopReason reason = StopReason.MAX_ITERATIONS;
+		double previousDb = Double.NaN;
+		int i = 0;
+		while(i < iterations){
+			checkAborted();
+			//The metrics are only collected if some listener is attached
+			IterationMetrics metrics = isObserved()? new IterationMetrics(restart, seed, i) : null;
+			long t = (metrics == null)? 0 : System.nanoTime();
+			ClusteringEvents.Iteration event = new ClusteringEvents.Iteration();
+			event.begin();
+			
+			//Compute the rough clustering in a buffer holding neither the previous nor the best one
+			previous = stopOnStableMembership? clustering : null;
+			clustering = buffer(buffers, previous, bestClustering, ds.numInstances());
+			assign(kernel, centroids, weights, clustering, bounds);
+			if(metrics != null){
+				t = metrics.lap(Phase.ASSIGNMENT, t);
+				metrics.addDistanceEvaluations((bounds == null)? ((long) ds.numInstances())*k : bounds.evaluations());
+			}
+			if(previous != null && previous.sameAssignment(clustering)){
+				//the representatives and the weights only depend on the clustering: this is a fixed point
+				reason = StopReason.STABLE_MEMBERSHIP;
+				if(metrics != null){
+					metrics.finish(Double.NaN);
+					fireIterationCompleted(metrics);
+				}
+				commit(event, restart, i, clustering);
+				break;
+			}
+			i++;
+			
+			//Build the orthopartition, only needed to recompute the weights
+			Orthopartition pi = reweight? new Orthopartition(clustering, universe) : null;
+			if(metrics != null)
+				t = metrics.lap(Phase.ORTHOPARTITION, t);
+			
+			//Recompute the representatives
+			double[][] old = (centroidTolerance > 0)? copy(centroids) : null;
+			updateCentroids(ds, clustering, stats, centroids);
+			int numClusters = stats.numClusters();
+			boolean shifted = old == null || maxShift(old, centroids, weights) > centroidTolerance;
+			if(metrics != null)
+				t = metrics.lap(Phase.CENTROIDS, t);
+			
+			//Recompute the weights
+			if(reweight)
+				weightAttributes(kernel, universe, pi, weights);
+			if(metrics != null)
+				t = metrics.lap(Phase.REWEIGHT, t);
+			
+			//If the new clustering is better than the old substitute the representatives, the best model
+			//keeps the buffer of the clustering
+			double db = computeDaviesBouldin(kernel, clustering, numClusters, centroids, weights);
+			boolean compared = bestClustering != null;
+			if(!compared || computeDaviesBouldin(kernel, clustering, numClusters, best.centroids, weights) > db){
+				best = new Model(copy(centroids), weights.clone(), null, db);
+				bestClustering = clustering;
+			}
+			if(metrics != null){
+				metrics.lap(Phase.DAVIES_BOULDIN, t);
+				metrics.regions(clustering, numClusters);
+				//each DB-index evaluates the distance of each membership and of each pair of representatives
+				long evaluations = metrics.getMemberships() + ((long) numClusters)*(numClusters - 1)/2;
+				metrics.addDistanceEvaluations(compared? 2*evaluations : evaluations);
+				metrics.finish(db);
+				fireIterationCompleted(metrics);
+			}
+			commit(event, restart, i - 1, clustering);
+			
+			if(!shifted){
+				reason = StopReason.CENTROID_SHIFT;
+				break;
+			}
+			if(daviesBouldinTolerance > 0 && previousDb - db < daviesBouldinTolerance){
+				reason = StopReason.DB_IMPROVEMENT;
+				break;
+			}
+			previousDb = db;
+		}
+		if(bestClustering != null)
+			best = new Model(best.centroids, best.weights, new Orthopartition(bestClustering, universe), best.db);
+		best.iterationsRun = i;
+		best.stopReason = reason;
+		return best;
+	}
+
+	/**
+	 * Get a buffer of the pool different from the given ones, allocating it on first use
+	 * @param buffers, pool of buffers, of size 3
+	 * @param a, buffer in use, or null
+	 * @param b, buffer in use, or null
+	 * @param numInstances, number of instances
+	 * @return the buffer
+	 */
+	private Memberships buffer(Memberships[] buffers, Memberships a, Memberships b, int numInstances){
+		for(int i = 0; ; i++){
+			if(buffers[i] == null)
+				buffers[i] = new Memberships(numInstances, k);
+			if(buffers[i] != a && buffers[i] != b)
+				return buffers[i];
+		}
+	}
+	
+	/**
+	 * Run a single restart of the out-of-core training: each iteration streams the chunks of the
+	 * dataset twice, to assign the instances (accumulating the statistics of the regions and spilling
+	 * the assignment) and to compute the DB-index of the new representatives. The assignment of the
+	 * best iteration is copied to a second file
+	 * @param data, chunked dataset
+	 * @param seed, seed of the restart
+	 * @param restart, index of the restart
+	 * @return the best model of the restart, with its spilled assignment
+	 * @throws Exception
+	 */
+	protected Model train(ChunkedDataset data, long seed, int restart) throws Exception{
+		double[] weights = new double[data.numAttributes()];
+		for(int i = 0; i < weights.length; i++)
+			weights[i] = 1.0/(data.numAttributes() - 1);
+		double[][] centroids = setSeed(data, seed, weights);
+		Model best = new Model(copy(centroids), weights.clone(), null, Double.NaN);
+		
+		MembershipFile current = new MembershipFile(data.numInstances(), k, spillDirectory);
+		MembershipFile bestMemberships = null;
+		try{
+			ChunkedDataset.Chunk chunk = data.newChunk();
+			int words = current.words();
+			long[] masks = new long[data.getChunkSize()*words];
+			long[] previous = new long[data.getChunkSize()*words];
+			int[] clusters = new int[k];
+			CentroidStatistics stats = new CentroidStatistics(data.getHeader(), k);
+			StopReason reason = StopReason.MAX_ITERATIONS;
+			double previousDb = Double.NaN;
+			int i = 0;
+			while(i < iterations){
+				checkAborted();
+				//The metrics are only collected if some listener is attached
+				IterationMetrics metrics = isObserved()? new IterationMetrics(restart, seed, i) : null;
+				long t = (metrics == null)? 0 : System.nanoTime();
+				ClusteringEvents.Iteration event = new ClusteringEvents.Iteration();
+				event.begin();
+				
+				//Compute the rough clustering chunk by chunk, comparing it with the spilled one
+				boolean stable = stopOnStableMembership && i > 0;
+				stats.clear();
+				for(int c = 0; c < data.numChunks(); c++){
+					data.read(c, chunk);
+					int from = chunk.getFrom(), to = from + chunk.size();
+					assign(chunk, centroids, weights, masks, words);
+					if(stable){
+						current.read(from, to, previous);
+						stable = Arrays.equals(masks, 0, chunk.size()*words, previous, 0, chunk.size()*words);
+					}
+					current.write(from, to, masks);
+					for(int r = 0; r < chunk.size(); r++)
+						stats.add(chunk.row(r), clusters, Memberships.clusters(masks, r*words, words, clusters));
+				}
+				if(metrics != null){
+					t = metrics.lap(Phase.ASSIGNMENT, t);
+					metrics.addDistanceEvaluations(((long) data.numInstances())*k);
+				}
+				if(stable){
+					//the representatives only depend on the clustering: this is a fixed point
+					reason = StopReason.STABLE_MEMBERSHIP;
+					if(metrics != null){
+						metrics.finish(Double.NaN);
+						fireIterationCompleted(metrics);
+					}
+					commit(event, restart, i, data.numInstances(), (int) stats.boundary());
+					break;
+				}
+				i++;
+				
+				//Recompute the representatives from the statistics of the regions
+				int numClusters = stats.numClusters();
+				double[][] old = (centroidTolerance > 0)? copy(centroids) : null;
+				updateCentroids(stats, centroids);
+				boolean shifted = old == null || maxShift(old, centroids, weights) > centroidTolerance;
+				if(metrics != null)
+					t = metrics.lap(Phase.CENTROIDS, t);
+				
+				//Compute the DB-index of the new representatives and of the best ones on the spilled clustering
+				boolean compared = bestMemberships != null;
+				double[][] SP = new double[2][numClusters];
+				double[][] SB = new double[2][numClusters];
+				long[] nP = new long[numClusters];
+				long[] nB = new long[numClusters];
+				for(int c = 0; c < data.numChunks(); c++){
+					data.read(c, chunk);
+					current.read(chunk.getFrom(), chunk.getFrom() + chunk.size(), masks);
+					for(int r = 0; r < chunk.size(); r++){
+						int count = Memberships.clusters(masks, r*words, words, clusters);
+						double[] x = chunk.row(r);
+						for(int e = 0; e < count; e++){
+							int j = clusters[e];
+							if(count == 1){
+								SP[0][j] += kernel.distance(x, centroids[j], weights);
+								if(compared)
+									SP[1][j] += kernel.distance(x, best.centroids[j], weights);
+								nP[j]++;
+							}else{
+								SB[0][j] += kernel.distance(x, centroids[j], weights);
+								if(compared)
+									SB[1][j] += kernel.distance(x, best.centroids[j], weights);
+								nB[j]++;
+							}
+						}
+					}
+				}
+				double db = computeDaviesBouldin(kernel, SP[0], SB[0], nP, nB, centroids, weights);
+				if(!compared || computeDaviesBouldin(kernel, SP[1], SB[1], nP, nB, best.centroids, weights) > db){
+					best = new Model(copy(centroids), weights.clone(), null, db);
+					best.boundary = (int) stats.boundary();
+					if(bestMemberships == null)
+						bestMemberships = new MembershipFile(data.numInstances(), k, spillDirectory);
+					current.copyTo(bestMemberships);
+				}
+				if(metrics != null){
+					metrics.lap(Phase.DAVIES_BOULDIN, t);
+					metrics.regions(stats);
+					long evaluations = metrics.getMemberships() + ((long) numClusters)*(numClusters - 1)/2;
+					metrics.addDistanceEvaluations(compared? 2*evaluations : evaluations);
+					metrics.finish(db);
+					fireIterationCompleted(metrics);
+				}
+				commit(event, restart, i - 1, data.numInstances(), (int) stats.boundary());
+				
+				if(!shifted){
+					reason = StopReason.CENTROID_SHIFT;
+					break;
+				}
+				if(daviesBouldinTolerance > 0 && previousDb - db < daviesBouldinTolerance){
+					reason = StopReason.DB_IMPROVEMENT;
+					break;
+				}
+				previousDb = db;
+			}
+			best.iterationsRun = i;
+			best.stopReason = reason;
+			best.memberships = bestMemberships;
+		}catch(Exception e){
+			if(bestMemberships != null)
+				bestMemberships.close();
+			throw e;
+		}finally{
+			current.close();
+		}
+		return best;
+	}
+	
+	/**
+	 * Compute the rough assignment of the rows of a chunk as bitmasks, concurrently if the clusterer is parallel
+	 * @param chunk, rows of the chunk
+	 * @param centroids, values of the cluster representatives
+	 * @param weights, attribute weights
+	 * @param masks, bitmasks of the rows, overwritten
+	 * @param words, number of words of a bitmask
+	 */
+	private void assign(ChunkedDataset.Chunk chunk, double[][] centroids, double[] weights, long[] masks, int words){
+		RangeTask.Body body = (from, to) -> {
+			double[] dists = new double[centroids.length];
+			for(int r = from; r < to; r++){
+				double[] x = chunk.row(r);
+				double minDist = Double.MAX_VALUE;
+				for(int j = 0; j < centroids.length; j++){
+					dists[j] = kernel.distance(x, centroids[j], weights);
+					if(dists[j] < minDist)
+						minDist = dists[j];
+				}
+				Arrays.fill(masks, r*words, (r + 1)*words, 0);
+				for(int j = 0; j < centroids.length; j++)
+					if(dists[j] == minDist || minDist/dists[j] >= threshold)
+						masks[r*words + (j >>> 6)] |= 1L << j;
+			}
+		};
+		ForkJoinPool pool = getPool();
+		if(pool == null || chunk.size() <= ASSIGNMENT_GRAIN)
+			body.apply(0, chunk.size());
+		else//each row is independent, the tasks write disjoint words of the masks
+			pool.invoke(new RangeTask(body, 0, chunk.size(), ASSIGNMENT_GRAIN));
+	}
+	
+	/**
+	 * Set the initial seed centroids/cluster representatives of a chunked dataset, selecting the
+	 * same instances of {@link #setSeed(DistanceKernel, long, double[])} with a pass over the chunks
+	 * for each representative
+	 * @param data, chunked dataset
+	 * @param seed, seed for the selection of the first representative
+	 * @param weights, attribute weights
+	 * @return the values of the representatives
+	 * @throws Exception - the dataset cannot be read, or it has fewer than k distinct instances
+	 */
+	protected double[][] setSeed(ChunkedDataset data, long seed, double[] weights) throws Exception{
+		int[] selected = new int[k];
+		double[][] centroids = new double[k][];
+		Random r = new Random(seed);
+		selected[0] = r.nextInt(data.numInstances());
+		centroids[0] = data.row(selected[0]);
+		
+		//At each iteration selects as new representative the instance with the maximum distance
+		//w.r.t. the already selected representatives
+		ChunkedDataset.Chunk chunk = data.newChunk();
+		for(int i = 1; i < k; i++){
+			double maxDist = 0;
+			int best = -1;
+			for(int c = 0; c < data.numChunks(); c++){
+				data.read(c, chunk);
+				for(int e = 0; e < chunk.size(); e++){
+					int inst = chunk.getFrom() + e;
+					boolean off = false;
+					for(int j = 0; j < i && !off; j++)
+						off = selected[j] == inst;
+					if(off)
+						continue;
+					double dist = 0;
+					for(int j = 0; j < i; j++){
+					  dist += kernel.distance(centroids[j], chunk.row(e), weights);
+					}
+					dist /= i;
+					if(dist > maxDist){
+						maxDist = dist;
+						best = inst;
+						centroids[i] = chunk.row(e).clone();
+					}
+				}
+			}
+			if(best < 0)
+				throw new Exception("Fewer than k distinct instances: no instance is farther than 0 from the selected representatives");
+			selected[i] = best;
+		}
+		return centroids;
+	}
+	
+	/**
+	 * Commit the event of an iteration, if enabled
+	 * @param event, the event, started at the beginning of the iteration
+	 * @param restart, index of the restart
+	 * @param iteration, index of the iteration
+	 * @param clustering, assignment of the instances
+	 */
+	protected void commit(ClusteringEvents.Iteration event, int restart, int iteration, Memberships clustering){
+		if(event.shouldCommit())
+			commit(event, restart, iteration, clustering.numInstances(), clustering.boundary());
+	}
+	
+	/**
+	 * Commit the event of an iteration, if enabled
+	 * @param event, the event, started at the beginning of the iteration
+	 * @param restart, index of the restart
+	 * @param iteration, index of the iteration
+	 * @param instances, number of instances
+	 * @param boundary, number of instances in some boundary
+	 */
+	protected void commit(ClusteringEvents.Iteration event, int restart, int iteration, int instances, int boundary){
+		if(event.shouldCommit()){
+			event.clusterer = getClass().getSimpleName();
+			event.restart = restart;
+			event.iteration = iteration;
+			event.instances = instances;
+			event.k = k;
+			event.boundary = boundary;
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Compute the largest distance between the old and the new value of a representative
+	 * @param old, old values of the representatives
+	 * @param centroids, new values of the representatives
+	 * @param weights, attribute weights
+	 * @return the largest distance, NaN if some distance is not defined
+	 */
+	protected double maxShift(double[][] old, double[][] centroids, double[] weights){
+		double shift = 0;
+		for(int j = 0; j < centroids.length; j++){
+			double d = kernel.distance(old[j], centroids[j], weights);
+			if(Double.isNaN(d))
+				return d;
+			shift = Math.max(shift, d);
+		}
+		return shift;
+	}
+	
+	/**
+	 * The result of a restart: representatives, weights, orthopartition (or spilled assignment) and
+	 * DB-index, with the number of iterations run by the restart and the reason why it ended
+	 */
+	protected static class Model {
+		final double[][] centroids;
+		final double[] weights;
+		final Orthopartition clustering;
+		final double db;
+		int iterationsRun;
+		StopReason stopReason;
+		//assignment and number of instances in some boundary of the out-of-core training
+		MembershipFile memberships = null;
+		int boundary = 0;
+		
+		Model(double[][] centroids, double[] weights, Orthopartition clustering, double db){
+			this.centroids = centroids;
+			this.weights = weights;
+			this.clustering = clustering;
+			this.db = db;
+		}
+	}
+	
+	/**
+	 * Recompute the cluster representatives: the numeric attributes are set to the (weighted)
+	 * mean of the lower and upper regions, the discrete attributes to the discrete representative.
+	 * The statistics of the regions are accumulated in a single pass over the instances, then the
+	 * representatives are computed from them
+	 * @param ds, columnar dataset
+	 * @param clustering, assignment of the instances
+	 * @param stats, statistics of the regions, cleared and accumulated in place
+	 * @param centroids, values of the cluster representatives, updated in place
+	 */
+	protected void updateCentroids(Dataset ds, Memberships clustering, CentroidStatistics stats, double[][] centroids){
+		int numAttributes = ds.numAttributes();
+		NumericColumn[] numericColumns = new NumericColumn[numAttributes];
+		NominalColumn[] nominalColumns = new NominalColumn[numAttributes];
+		for(int a = 0; a < numAttributes; a++){
+			numericColumns[a] = ds.numericColumn(a);
+			nominalColumns[a] = ds.nominalColumn(a);
+		}
+		stats.clear();
+		double[] x = new double[numAttributes];
+		int[] clusters = new int[clustering.getK()];
+		for(int instInd = 0; instInd < clustering.numInstances(); instInd++){
+			for(int a = 0; a < numAttributes; a++)
+				if(numericColumns[a] != null)
+					x[a] = numericColumns[a].get(instInd);
+				else{
+					int v = nominalColumns[a].get(instInd);
+					x[a] = (v < 0)? Double.NaN : v;
+				}
+			stats.add(x, clusters, clustering.clusters(instInd, clusters));
+		}
+		updateCentroids(stats, centroids);
+	}
+
+	/**
+	 * Recompute the cluster representatives from the statistics of their regions: the numeric
+	 * attributes are set to the (weighted) mean of the lower and upper regions, the discrete
+	 * attributes to the discrete representative. Only the regions of the clusters are weighted,
+	 * a cluster with an empty lower region or boundary is represented by its upper region
+	 * @param stats, statistics of the regions of the clusters
+	 * @param centroids, values of the cluster representatives, updated in place
+	 */
+	protected void updateCentroids(CentroidStatistics stats, double[][] centroids){
+		for(int j = 0; j < stats.numClusters(); j++){
+			if(stats.upperSize(j) == 0)
+				continue;
+			for(int a = 0; a < centroids[j].length; a++){
+				if(stats.lowerSize(j) == stats.upperSize(j))
+					centroids[j][a] = kernel.isNumeric(a)? stats.upperMean(j, a) 
+							: discreteRepresentative(stats, j, a, 0, 1);
+				else if(stats.lowerSize(j) == 0)
+					centroids[j][a] = kernel.isNumeric(a)? stats.upperMean(j, a) 
+							: discreteRepresentative(stats, j, a, 1, 0);
+				else
+					centroids[j][a] = kernel.isNumeric(a)? wl*stats.lowerMean(j, a) + wu*stats.upperMean(j, a)
+							: discreteRepresentative(stats, j, a, wu, wl);
+			}
+		}
+	}
+
+	protected static double[][] copy(double[][] centroids){
+		double[][] result = new double[centroids.length][];
+		for(int j = 0; j < centroids.length; j++)
+			result[j] = centroids[j].clone();
+		return result;
+	}
+
+	/**
+	 * Convert the values of the cluster representatives to instances of the given dataset
+	 * @param centroids, values of the cluster representatives
+	 * @param data, dataset
+	 * @return the cluster representatives
+	 */
+	protected static Instance[] toInstances(double[][] centroids, Instances data){
+		Instance[] result = new Instance[centroids.length];
+		for(int j = 0; j < centroids.length; j++){
+			result[j] = new DenseInstance(1.0, centroids[j].clone());
+			result[j].setDataset(data);
+		}
+		return result;
+	}
+}
@@ -1,13 +1,11 @@
 package roughclustering;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
 
-import weka.core.DenseInstance;
 import weka.core.Instance;
 import weka.core.Instances;
 
@@ -28,7 +26,17 @@ public abstract class RoughClusterer{
 	protected int restarts;
 	protected boolean useHeuristic = true;
 	protected boolean reweight = true;
+	protected boolean useBounds = false;
 	protected Orthopartition o = null;
+	protected DistanceKernel kernel = null;
+	protected int numThreads = 1;
+	protected ForkJoinPool pool = null;
+	protected final CopyOnWriteArrayList<ClustererListener> listeners = new CopyOnWriteArrayList<ClustererListener>();
+	
+	/**
+	 * Minimum number of instances assigned by a single fork-join task
+	 */
+	protected static final int ASSIGNMENT_GRAIN = 512;
 
 	public Orthopartition getClustering(){
 		return o;
@@ -98,6 +106,86 @@ public abstract class RoughClusterer{
 		this.useHeuristic = useHeuristic;
 	}
 
+	public boolean isUseBounds() {
+		return useBounds;
+	}
+
+	/**
+	 * Set whether the assignment keeps distance bounds across iterations to skip the
+	 * representatives that cannot contain an instance, the clustering is the same.
+	 * The bounds take O(n*k) memory
+	 * @param useBounds, whether to use the bounds
+	 */
+	public void setUseBounds(boolean useBounds) {
+		this.useBounds = useBounds;
+	}
+
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	/**
+	 * Set the number of threads used by the parallel steps of the clusterer
+	 * @param numThreads, 1 for sequential execution (default), 0 to use the common fork-join pool
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+		pool = null;
+	}
+
+	/**
+	 * Set the fork-join pool used by the parallel steps of the clusterer
+	 * @param pool, a fork-join pool
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+		numThreads = pool.getParallelism();
+	}
+
+	/**
+	 * Get the fork-join pool used by the parallel steps, it is created on first use
+	 * @return the pool, null if the clusterer is sequential
+	 */
+	protected ForkJoinPool getPool() {
+		if(pool == null && numThreads != 1)
+			pool = (numThreads <= 0)? ForkJoinPool.commonPool() : new ForkJoinPool(numThreads);
+		return pool;
+	}
+
+	/**
+	 * Attach a listener, notified of the metrics of the iterations and of the restarts
+	 * @param listener, a listener
+	 */
+	public void addListener(ClustererListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Detach a listener
+	 * @param listener, a listener
+	 */
+	public void removeListener(ClustererListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Checks whether some listener is attached, the metrics are only collected in that case
+	 * @return whether some listener is attached
+	 */
+	protected boolean isObserved() {
+		return !listeners.isEmpty();
+	}
+
+	protected void fireIterationCompleted(IterationMetrics metrics) {
+		for(ClustererListener l : listeners)
+			l.iterationCompleted(metrics);
+	}
+
+	protected void fireRestartCompleted(RestartMetrics metrics) {
+		for(ClustererListener l : listeners)
+			l.restartCompleted(metrics);
+	}
+
 	public boolean isReweight() {
 		return reweight;
 	}
@@ -106,6 +194,18 @@ public abstract class RoughClusterer{
 		this.reweight = reweight;
 	}
 
+	/**
+	 * Get the distance kernel of the given dataset, the kernel is rebuilt only if
+	 * the dataset differs from the one of the current kernel
+	 * @param data, dataset
+	 * @return the distance kernel
+	 */
+	protected DistanceKernel getKernel(Instances data){
+		if(kernel == null || !kernel.isKernelOf(data))
+			kernel = new DistanceKernel(data);
+		return kernel;
+	}
+
 	/**
 	 * Compute the rough clustering
 	 * @param data, dataset
@@ -113,6 +213,16 @@ public abstract class RoughClusterer{
 	 */
 	public abstract void buildClusterer(Instances data) throws Exception;
 	
+	/**
+	 * Compute the rough clustering of a columnar dataset, by default on its instances, which are
+	 * materialized: the clusterers training on the columns override this method
+	 * @param ds, columnar dataset
+	 * @throws Exception
+	 */
+	public void buildClusterer(Dataset ds) throws Exception{
+		buildClusterer(ds.getData());
+	}
+	
 	/**
 	 * Compute the best assignment of the given instance
 	 * @param inst, instance
@@ -121,16 +231,25 @@ public abstract class RoughClusterer{
 	 * @throws Exception
 	 */
 	public int clusterInstance(Instance inst, Instances data) throws Exception{
+		ClusteringEvents.Scoring event = new ClusteringEvents.Scoring();
+		event.begin();
+		DistanceKernel kernel = getKernel(data);
 		double[] dists = new double[k];
 		double minDist = Double.MAX_VALUE;
 		int ind = -1;
 		for(int j = 0; j < k; j++){
-			dists[j] = computeDistance(data, inst, centroids[j], weights);
+			dists[j] = kernel.distance(inst, centroids[j], weights);
 			if(dists[j] < minDist){
 				minDist = dists[j];
 				ind = j;
 			}
 		}
+		if(event.shouldCommit()){
+			event.clusterer = getClass().getSimpleName();
+			event.instances = 1;
+			event.k = k;
+			event.commit();
+		}
 		return ind;
 	}
 	
@@ -141,27 +260,90 @@ public abstract class RoughClusterer{
 	 * @throws Exception
 	 */
 	public Orthopartition clusterInstances(Instances data) throws Exception{
-		ArrayList<ArrayList<Integer>> clustering = new ArrayList<ArrayList<Integer>>(
-				Collections.nCopies(data.numInstances(), new ArrayList<Integer>()));
-			for(int instInd = 0; instInd < data.numInstances(); instInd++){
-				Instance inst = new DenseInstance(data.get(instInd));
-				double[] dists = new double[k];
-				double minDist = Double.MAX_VALUE;
-				clustering.set(instInd, new ArrayList<Integer>());
-				
-				for(int j = 0; j < k; j++){
-					dists[j] = computeDistance(data, inst, centroids[j], weights);
-					//System.out.println(dists[j]);
-					if(dists[j] < minDist)
-						minDist = dists[j];
-				}
-				//System.out.println(minDist);
-				for(int j = 0; j < k; j++){
-					if(dists[j] == minDist || minDist/dists[j] >= threshold)
-						clustering.get(instInd).add(j);
-				}
+		ClusteringEvents.Scoring event = new ClusteringEvents.Scoring();
+		event.begin();
+		DistanceKernel kernel = getKernel(data);
+		Memberships clustering = new Memberships(data.numInstances(), k);
+		double[][] values = new double[k][];
+		for(int j = 0; j < k; j++)
+			values[j] = centroids[j].toDoubleArray();
+		assign(kernel, values, weights, clustering);
+		Orthopartition result = new Orthopartition(clustering, new Universe(data));
+		if(event.shouldCommit()){
+			event.clusterer = getClass().getSimpleName();
+			event.instances = data.numInstances();
+			event.k = k;
+			event.boundary = clustering.boundary();
+			event.commit();
+		}
+		return result;
+	}
+	
+	/**
+	 * Compute the rough assignment of the instances of a dataset: each instance is assigned to
+	 * the nearest representative and to every representative c such that minDist/d(x,c) >= threshold
+	 * @param kernel, distance kernel of the dataset
+	 * @param centroids, values of the cluster representatives
+	 * @param weights, attribute weights
+	 * @param clustering, assignment of the instances, overwritten
+	 */
+	protected void assign(DistanceKernel kernel, double[][] centroids, double[] weights, 
+			Memberships clustering){
+		assign(kernel, centroids, weights, clustering, null);
+	}
+	
+	/**
+	 * Compute the rough assignment of the instances of a dataset, skipping the distance computations
+	 * excluded by the given bounds (the assignment is the same)
+	 * @param kernel, distance kernel of the dataset
+	 * @param centroids, values of the cluster representatives
+	 * @param weights, attribute weights
+	 * @param clustering, assignment of the instances, overwritten
+	 * @param bounds, distance bounds of the previous assignments, updated (null to compute all the distances)
+	 */
+	protected void assign(DistanceKernel kernel, double[][] centroids, double[] weights, 
+			Memberships clustering, AssignmentBounds bounds){
+		ClusteringEvents.Assignment event = new ClusteringEvents.Assignment();
+		event.begin();
+		int card = kernel.getColumns().numInstances();
+		if(bounds != null)
+			bounds.prepare(kernel, centroids, weights, threshold);
+		RangeTask.Body body = (bounds == null)? (from, to) -> assign(kernel, centroids, weights, clustering, from, to)
+				: (from, to) -> bounds.assign(clustering, from, to);
+		ForkJoinPool pool = getPool();
+		if(pool == null || card <= ASSIGNMENT_GRAIN)
+			body.apply(0, card);
+		else//each instance is independent, the tasks write disjoint words of the clustering
+			pool.invoke(new RangeTask(body, 0, card, ASSIGNMENT_GRAIN));
+		if(event.shouldCommit()){
+			event.clusterer = getClass().getSimpleName();
+			event.instances = card;
+			event.k = centroids.length;
+			event.boundary = clustering.boundary();
+			event.commit();
+		}
+	}
+	
+	/**
+	 * Compute the rough assignment of the instances in [from, to), the distances are written in
+	 * a buffer allocated once for the range
+	 */
+	private void assign(DistanceKernel kernel, double[][] centroids, double[] weights, 
+			Memberships clustering, int from, int to){
+		double[] dists = new double[centroids.length];
+		for(int instInd = from; instInd < to; instInd++){
+			double minDist = Double.MAX_VALUE;
+			for(int j = 0; j < centroids.length; j++){
+				dists[j] = kernel.distance(instInd, centroids[j], weights);
+				if(dists[j] < minDist)
+					minDist = dists[j];
 			}
-		return new Orthopartition(clustering, data);
+			clustering.clear(instInd);
+			for(int j = 0; j < centroids.length; j++){
+				if(dists[j] == minDist || minDist/dists[j] >= threshold)
+					clustering.add(instInd, j);
+			}
+		}
 	}
 	
 	/**
@@ -171,72 +353,73 @@ public abstract class RoughClusterer{
 	 * @throws Exception
 	 */
 	protected void weightAttributes(Instances data, Orthopartition o) throws Exception{
+		weightAttributes(data, o, weights);
+	}
+	
+	/**
+	 * Recomputes the given attribute weights
+	 * @param data, dataset
+	 * @param o, an orthopartition
+	 * @param weights, attribute weights, updated in place
+	 * @throws Exception
+	 */
+	protected void weightAttributes(Instances data, Orthopartition o, double[] weights) throws Exception{
+		weightAttributes(getKernel(data), new Universe(data), o, weights);
+	}
+	
+	/**
+	 * Recomputes the given attribute weights
+	 * @param kernel, distance kernel of the dataset
+	 * @param universe, indexed universe of the dataset
+	 * @param o, an orthopartition
+	 * @param weights, attribute weights, updated in place
+	 * @throws Exception
+	 */
+	protected void weightAttributes(DistanceKernel kernel, Universe universe, Orthopartition o, double[] weights) 
+			throws Exception{
+		ClusteringEvents.Reweight event = new ClusteringEvents.Reweight();
+		event.begin();
+		Dataset ds = kernel.getColumns();
 		for(int i = 0; i < weights.length; i++){
-				ArrayList<ArrayList<Integer>> clustering = new ArrayList<ArrayList<Integer>>(
-						Collections.nCopies(data.numInstances(), new ArrayList<Integer>()));
-				Orthopartition p;
-				ArrayList<Orthopair> family = new ArrayList<Orthopair>();
+				MembershipIndex p;
 				//Computes orthocovering determined by the current (numeric) attribute
-				if(data.attribute(i).isNumeric()){
-					for(int j = 0; j < data.numInstances(); j++){
-						double max = data.attributeStats(i).numericStats.max;
-						double min = data.attributeStats(i).numericStats.min;
-						HashSet<Instance> pos = new HashSet<Instance>();
-						HashSet<Instance> neg = new HashSet<Instance>();
-						for(int k = 0; k < data.numInstances(); k++)
-							if(j==k || 1 - (Math.abs(data.get(j).value(i) - data.get(k).value(i))/(max - min)) >= threshold)
-								pos.add(data.get(k));
-							else
-								neg.add(data.get(k));
-						Orthopair op = new Orthopair(neg, pos, new HashSet<Instance>());
-						family.add(op);
-					}
+				if(ds.isNumeric(i)){
+					IntervalCovering covering = new IntervalCovering(kernel, i, threshold);
+					int[] selected;
 					//If useHeuristic then compacts the orthocovering
-					if(useHeuristic){
-						ArrayList<Orthopair> tf = new ArrayList<Orthopair>();
-						HashSet<Instance> s = new HashSet<Instance>();
-						while(!s.equals(family.get(0).getUniverse())){
-							int max = 0;
-							int im = -1;
-							for(int io = 0; io < family.size(); io++){
-								Orthopair to = new Orthopair(family.get(io));
-								to.getP().addAll(s);
-								if(to.getP().size() > max){
-									max = to.getP().size();
-									im = io;
-								}
-							}
-							s.addAll(family.get(im).getP());
-							tf.add(family.get(im));
-						}
-						family = tf;
-					}
-					boolean overlap = false;
-					for(Orthopair o1 : family){
-						for(Orthopair o2: family){
-							Orthopair tmp = new Orthopair(o1);
-							if(o1 != o2 && !tmp.intersect(o2).isEmpty()){
-								overlap = true;
-								break;
-							}
-						}
-						if(overlap)
-							break;
+					if(useHeuristic)
+						selected = covering.greedyCover();
+					else{
+						selected = new int[ds.numInstances()];
+						for(int j = 0; j < selected.length; j++)
+							selected[j] = j;
 					}
-					p = new Orthopartition(family, overlap);
+					p = covering.toIndex(selected, covering.overlaps(selected));
 				}else{ //Compute the orthopartition determined by the current (discrete) attribute
-					for(int j = 0; j < data.numInstances(); j++){
-						clustering.get(j).add((int) data.get(j).value(i));
+					IntList pairs = new IntList(2*ds.numInstances());
+					int numValues = 0;
+					for(int j = 0; j < ds.numInstances(); j++){
+						int v = (int) ds.value(j, i);
+						pairs.add(j);
+						pairs.add(v);
+						numValues = Math.max(numValues, v + 1);
 					}
-					p = new Orthopartition(clustering, data);
+					p = new MembershipIndex(ds.numInstances(), numValues, false, pairs, new IntList(0));
 				}
-				weights[i] = o.mutualInformation(p);
+				weights[i] = o.mutualInformation(p, universe);
 		}
 		double sum = 0;
 		for(int i = 0; i < weights.length; i++)
 			sum += weights[i];
 		for(int i = 0; i < weights.length; i++)
 			weights[i] /= sum;
+		if(event.shouldCommit()){
+			event.clusterer = getClass().getSimpleName();
+			event.instances = ds.numInstances();
+			event.attributes = weights.length;
+			event.k = o.numOrthopairs();
+			event.commit();
+		}
 		}
 	
 	
@@ -246,6 +429,7 @@ public abstract class RoughClusterer{
 	 * @return
 	 */
 	protected Instance[] setSeed(Instances data, long seed){
+		DistanceKernel kernel = getKernel(data);
 		Instance[] centroids = new Instance[k];
 		Random r = new Random(seed);
 		int randomNum = r.nextInt(data.numInstances());
@@ -263,7 +447,7 @@ public abstract class RoughClusterer{
 					continue;
 				double dist = 0;
 				for(int j = 0; j < i; j++){
-				  dist += computeDistance(data, centroids[j], data.get(inst), weights);
+				  dist += kernel.distance(centroids[j], data.get(inst), weights);
 				}
 				dist /= i;
 				if(dist > maxDist){
@@ -277,6 +461,52 @@ public abstract class RoughClusterer{
 		return centroids;
 	}
 	
+	/**
+	 * Set the initial seed centroids/cluster representatives, the representatives are
+	 * copies of the selected instances
+	 * @param kernel, distance kernel of the dataset
+	 * @param seed, seed for the selection of the first representative
+	 * @param weights, attribute weights
+	 * @return the values of the representatives
+	 * @throws Exception - the dataset has fewer than k distinct instances
+	 */
+	protected double[][] setSeed(DistanceKernel kernel, long seed, double[] weights) throws Exception{
+		Dataset ds = kernel.getColumns();
+		int[] selected = new int[k];
+		boolean[] off = new boolean[ds.numInstances()];
+		Random r = new Random(seed);
+		selected[0] = r.nextInt(ds.numInstances());
+		off[selected[0]] = true;
+		
+		//At each iteration selects as new representative the instance with the maximum distance
+		//w.r.t. the already selected representatives
+		for(int i = 1; i < k; i++){
+			double maxDist = 0;
+			int best = -1;
+			for(int inst = 0; inst < ds.numInstances(); inst++){
+				if(off[inst])
+					continue;
+				double dist = 0;
+				for(int j = 0; j < i; j++){
+				  dist += kernel.distance(selected[j], inst, weights);
+				}
+				dist /= i;
+				if(dist > maxDist){
+					maxDist = dist;
+					best = inst;
+				}
+			}
+			if(best < 0)
+				throw new Exception("Fewer than k distinct instances: no instance is farther than 0 from the selected representatives");
+			selected[i] = best;
+			off[best] = true;
+		}
+		double[][] centroids = new double[k][];
+		for(int i = 0; i < k; i++)
+			centroids[i] = ds.row(selected[i]);
+		return centroids;
+	}
+	
 	/**
 	 * Compute the distance between two instances
 	 * @param data, dataset
@@ -286,20 +516,7 @@ public abstract class RoughClusterer{
 	 * @return the distance d(x,y)
 	 */
 	protected double computeDistance(Instances data, Instance x, Instance y, double[] weights){
-		double dist =  0 ;
-		for(int a = 0; a < data.numAttributes(); a++){
-				double value = 0;
-				if(data.attribute(a).isNumeric()){
-					double max = data.attributeStats(a).numericStats.max;
-					double min = data.attributeStats(a).numericStats.min;
-					value = weights[a]*
-							(Math.abs(x.value(a) - y.value(a))/(max - min));
-				}else{//attribute is discrete
-					value = weights[a]*((x.value(a) == y.value(a))? 0 : 1);
-				}
-				dist += value;
-		}
-		return dist;
+		return getKernel(data).distance(x, y, weights);
 	}
 	
 	/**
@@ -311,42 +528,43 @@ public abstract class RoughClusterer{
 	 * @return the value of the DB-index
 	 */
 	protected double computeDaviesBouldin(Instances data, Orthopartition o, Instance[] centroids, double[] weights){
+		DistanceKernel kernel = getKernel(data);
 		double db = 0;
 		double[] S = new double[centroids.length];
 		double[][] D = new double[centroids.length][centroids.length];
 		
-		for(int j = 0; j < o.getFamily().size(); j++){
+		for(int j = 0; j < o.family().size(); j++){
 			//Foreach orthopair in the collection compute its compactness
 			D[j][j] = 0;
 			S[j] = 0;
-			HashSet<Instance> P = o.getFamily().get(j).getP();
-			HashSet<Instance> Bnd = o.getFamily().get(j).getBnd();
+			HashSet<Instance> P = o.family().get(j).lower();
+			HashSet<Instance> Bnd = o.family().get(j).boundary();
 			if(Bnd.isEmpty() || P.isEmpty()){
 				HashSet<Instance> tmp = new HashSet<Instance>(P);
 				tmp.addAll(Bnd);
 				for(Instance i : tmp)
-					S[j] += computeDistance(data, i, centroids[j], weights);
+					S[j] += kernel.distance(i, centroids[j], weights);
 				S[j] /= tmp.size();
 			}else{
 				double SP = 0, SB = 0;
 				for(Instance i : P)
-					SP += wl*computeDistance(data, i, centroids[j], weights);
+					SP += wl*kernel.distance(i, centroids[j], weights);
 				for(Instance i : Bnd)
-					SB += wu*computeDistance(data, i, centroids[j], weights);
+					SB += wu*kernel.distance(i, centroids[j], weights);
 				S[j] = SP/P.size() + SB/Bnd.size();
 			}
 			
 			//Foreach other orthopair in the collection compute the distance between the representatives
-			for(int k = j + 1; k < o.getFamily().size(); k++){
-				D[j][k] = computeDistance(data, centroids[j], centroids[k], weights);
+			for(int k = j + 1; k < o.family().size(); k++){
+				D[j][k] = kernel.distance(centroids[j], centroids[k], weights);
 				D[k][j] = D[j][k];
 			}
 		}
 		
 		//Compute the coefficient
-		for(int j = 0; j < o.getFamily().size(); j++){
+		for(int j = 0; j < o.family().size(); j++){
 			double maxCoeff = 0;
-			for(int k = 0; k < o.getFamily().size(); k++)
+			for(int k = 0; k < o.family().size(); k++)
 				if(k != j){
 					double tmp = (S[j] + S[k])/D[j][k];
 					if(tmp > maxCoeff)
@@ -359,46 +577,159 @@ public abstract class RoughClusterer{
 	}
 	
 	/**
-	 * Compute the weighted mode
+	 * Compute Davis Bouldin index (DB-index) of a rough assignment in a single pass over the instances
+	 * @param kernel, distance kernel of the dataset
+	 * @param clustering, assignment of the instances
+	 * @param numClusters, number of orthopairs of the corresponding orthopartition
+	 * @param centroids, values of the cluster representatives
+	 * @param weights, attribute weights
+	 * @return the value of the DB-index
+	 */
+	protected double computeDaviesBouldin(DistanceKernel kernel, Memberships clustering, 
+			int numClusters, double[][] centroids, double[] weights){
+		double[] SP = new double[numClusters];
+		double[] SB = new double[numClusters];
+		long[] nP = new long[numClusters];
+		long[] nB = new long[numClusters];
+		int[] clusters = new int[clustering.getK()];
+		for(int instInd = 0; instInd < clustering.numInstances(); instInd++){
+			int count = clustering.clusters(instInd, clusters);
+			if(count == 1){
+				int j = clusters[0];
+				SP[j] += kernel.distance(instInd, centroids[j], weights);
+				nP[j]++;
+			}else
+				for(int c = 0; c < count; c++){
+					int j = clusters[c];
+					SB[j] += kernel.distance(instInd, centroids[j], weights);
+					nB[j]++;
+				}
+		}
+		return computeDaviesBouldin(kernel, SP, SB, nP, nB, centroids, weights);
+	}
+	
+	/**
+	 * Compute Davis Bouldin index (DB-index) from the distances of the instances of the lower regions
+	 * and of the boundaries from the representatives of their clusters
+	 * @param kernel, distance kernel of the dataset
+	 * @param SP, sum of the distances of the instances of the lower region of each cluster
+	 * @param SB, sum of the distances of the instances of the boundary of each cluster
+	 * @param nP, size of the lower region of each cluster
+	 * @param nB, size of the boundary of each cluster
+	 * @param centroids, values of the cluster representatives
+	 * @param weights, attribute weights
+	 * @return the value of the DB-index
+	 */
+	protected double computeDaviesBouldin(DistanceKernel kernel, double[] SP, double[] SB, long[] nP, long[] nB, 
+			double[][] centroids, double[] weights){
+		int numClusters = SP.length;
+		double db = 0;
+		
+		//Foreach orthopair compute its compactness and the distance between the representatives
+		double[] S = new double[numClusters];
+		double[][] D = new double[numClusters][numClusters];
+		for(int j = 0; j < numClusters; j++){
+			if(nB[j] == 0 || nP[j] == 0)
+				S[j] = (SP[j] + SB[j])/(nP[j] + nB[j]);
+			else
+				S[j] = wl*SP[j]/nP[j] + wu*SB[j]/nB[j];
+			for(int k = j + 1; k < numClusters; k++){
+				D[j][k] = kernel.distance(centroids[j], centroids[k], weights);
+				D[k][j] = D[j][k];
+			}
+		}
+		
+		//Compute the coefficient
+		for(int j = 0; j < numClusters; j++){
+			double maxCoeff = 0;
+			for(int k = 0; k < numClusters; k++)
+				if(k != j){
+					double tmp = (S[j] + S[k])/D[j][k];
+					if(tmp > maxCoeff)
+						maxCoeff = tmp;
+				}
+			db += maxCoeff;
+		}
+		return db/centroids.length;
+	}
+	
+	/**
+	 * Compute the weighted mode, counting the values by their index (missing values are skipped)
 	 * @param data, dataset
 	 * @param numAttr, index of the attribute to be considered
 	 * @param o, orthopartition
 	 * @param wu, upper region weight
 	 * @param wl, lower region weight
-	 * @return the index of the weighted mode
+	 * @return the index of the weighted mode, ties are resolved in favour of the first value
 	 */
 	protected static double weightedMode(Instances data, int numAttr, Orthopair o, double wu, double wl) {
-		
-		Enumeration vals = data.attribute(numAttr).enumerateValues();
-		HashMap<String, Double> map = new HashMap<String, Double>();
-		
-		while(vals.hasMoreElements()) {
-			map.put(vals.nextElement().toString(), 0.0);
-		}
-		
-		for(Instance i : o.getP()){
-			String v = String.valueOf(i.stringValue(numAttr));
-			double d = map.get(v);
-			d += wl + d;
-			map.replace(v, d);
-		}
-		
-		for(Instance i : o.getBnd()){
-			String v = String.valueOf(i.stringValue(numAttr));
-			double d = map.get(v);
-			d += wu + d;
-			map.replace(v, d);
+		double[] counts = new double[data.attribute(numAttr).numValues()];
+		for(Instance i : o.lower())
+			if(!i.isMissing(numAttr))
+				counts[(int) i.value(numAttr)] += wl;
+		for(Instance i : o.boundary())
+			if(!i.isMissing(numAttr))
+				counts[(int) i.value(numAttr)] += wu;
+		return mode(counts);
+	}
+	
+	/**
+	 * Compute the weighted mode on the columnar view of the dataset
+	 * @param ds, columnar dataset
+	 * @param numAttr, index of the attribute to be considered
+	 * @param lower, indices of the instances in the lower region
+	 * @param boundary, indices of the instances in the boundary
+	 * @param wu, upper region weight
+	 * @param wl, lower region weight
+	 * @return the index of the weighted mode, ties are resolved in favour of the first value
+	 */
+	protected static double weightedMode(Dataset ds, int numAttr, int[] lower, int[] boundary, double wu, double wl) {
+		NominalColumn column = ds.nominalColumn(numAttr);
+		double[] counts = new double[ds.numValues(numAttr)];
+		for(int i : lower)
+			if(column.get(i) >= 0)
+				counts[column.get(i)] += wl;
+		for(int i : boundary)
+			if(column.get(i) >= 0)
+				counts[column.get(i)] += wu;
+		return mode(counts);
+	}
+	
+	/**
+	 * Get the index of the largest count, the first one in case of ties (0 if no count is positive)
+	 */
+	private static double mode(double[] counts){
+		int max = 0;
+		double count = 0;
+		for(int v = 0; v < counts.length; v++){
+			if(counts[v] > count){
+				count = counts[v];
+				max = v;
+			}
 		}
-		
-		String max = (String) map.keySet().toArray()[0];
+		return (double) max;
+	}
+
+	/**
+	 * Compute the weighted mode of a discrete attribute from the value counts of the lower and
+	 * upper regions of a cluster, ties are resolved in favour of the first value
+	 * @param lower, number of instances in the lower region with each value
+	 * @param upper, number of instances in the upper region with each value
+	 * @param wu, upper region weight
+	 * @param wl, lower region weight
+	 * @return the index of the weighted mode
+	 */
+	protected static double weightedMode(long[] lower, long[] upper, double wu, double wl) {
+		int max = 0;
 		double count = 0;
-		for(String s : map.keySet()){
-			if(map.get(s) > count){
-				count = map.get(s);
-				max = s;
+		for(int v = 0; v < lower.length; v++){
+			double c = wl*lower[v] + wu*(upper[v] - lower[v]);
+			if(c > count){
+				count = c;
+				max = v;
 			}
 		}
-		return (double) data.attribute(numAttr).indexOfValue(max);
+		return (double) max;
 	}
 
 }
@@ -1,23 +1,20 @@
 package roughclustering;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
-import java.util.OptionalDouble;
+import java.util.SplittableRandom;
 
-import weka.core.DenseInstance;
-import weka.core.Instance;
-import weka.core.Instances;
+import roughclustering.IterationMetrics.Phase;
 
 /**
- * Implements a Rough KMeans rough clusterer
+ * Implements a Rough KMeans rough clusterer.
+ * If a mini-batch size is set, each iteration only assigns a random batch of instances and moves
+ * the representatives towards it, the orthopartition is computed by a full assignment at the end.
+ * With mini-batches only the centroid tolerance is used to stop early
  * @author Andrea Campagner
  *
  */
-public class RoughKMeansClusterer extends RoughClusterer {
+public class RoughKMeansClusterer extends RoughCentroidClusterer {
 	
-	private long seed = -1;
+	protected int miniBatchSize = 0;
 	
 	/**
 	 * Construct a Rough KMeans rough clusterer
@@ -54,105 +51,179 @@ public class RoughKMeansClusterer extends RoughClusterer {
 	}
 	
 	
+	public int getMiniBatchSize() {
+		return miniBatchSize;
+	}
+
+	/**
+	 * Set the number of instances sampled at each iteration
+	 * @param miniBatchSize, size of the batches, 0 to use the whole dataset at each iteration (default)
+	 */
+	public void setMiniBatchSize(int miniBatchSize) {
+		this.miniBatchSize = miniBatchSize;
+	}
+	
 	@Override
-	public void buildClusterer(Instances data) throws Exception{
-		for(int r = 0; r < restarts; r++){
-		int card = data.numInstances();
-		ArrayList<ArrayList<Integer>> clustering = new ArrayList<ArrayList<Integer>>(
-				Collections.nCopies(card, new ArrayList<Integer>()));
+	protected Model train(Dataset ds, Universe universe, long seed, int restart) throws Exception{
+		if(miniBatchSize <= 0 || miniBatchSize >= ds.numInstances())
+			return super.train(ds, universe, seed, restart);
 		
 		//Set the cluster representatives
-		weights = new double[data.numAttributes()];
+		double[] weights = new double[ds.numAttributes()];
 		for(int i = 0; i < weights.length; i++)
-			weights[i] = 1.0/(data.numAttributes() - 1);
-		Instance[] centroids;
-		centroids = setSeed(data,seed);
-		if(r == 0)
-		this.centroids = Arrays.copyOf(centroids, k);
+			weights[i] = 1.0/(ds.numAttributes() - 1);
+		double[][] centroids = setSeed(kernel, seed, weights);
 		
-		//Foreach iteration
-		for(int i = 0; i < iterations; i++){
-			//Compute the rough clustering
-			for(int instInd = 0; instInd < data.numInstances(); instInd++){
-				Instance inst = new DenseInstance(data.get(instInd));
-				double[] dists = new double[k];
-				double minDist = Double.MAX_VALUE;
-				clustering.set(instInd, new ArrayList<Integer>());
-				
-				for(int j = 0; j < k; j++){
-					dists[j] = computeDistance(data, inst, centroids[j], weights);
-					//System.out.println(dists[j]);
-					if(dists[j] < minDist)
-						minDist = dists[j];
-				}
-				//System.out.println(minDist);
-				for(int j = 0; j < k; j++){
-					if(dists[j] == minDist || minDist/dists[j] >= threshold)
-						clustering.get(instInd).add(j);
+		//Running means of the numeric attributes and value counts of the discrete attributes,
+		//for the lower and the upper region of each cluster
+		int numAttributes = ds.numAttributes();
+		long[] lowerSize = new long[k];
+		long[] upperSize = new long[k];
+		double[][] lowerMean = new double[k][numAttributes];
+		double[][] upperMean = new double[k][numAttributes];
+		long[][][] lowerCounts = new long[k][numAttributes][];
+		long[][][] upperCounts = new long[k][numAttributes][];
+		for(int j = 0; j < k; j++)
+			for(int a = 0; a < numAttributes; a++)
+				if(!ds.isNumeric(a)){
+					lowerCounts[j][a] = new long[ds.numValues(a)];
+					upperCounts[j][a] = new long[ds.numValues(a)];
 				}
+		
+		SplittableRandom r = new SplittableRandom(seed);
+		int[] batch = new int[miniBatchSize];
+		Memberships assignment = new Memberships(miniBatchSize, k);
+		int[] clusters = new int[k];
+		double[] dists = new double[k];
+		StopReason reason = StopReason.MAX_ITERATIONS;
+		int iter = 0;
+		while(iter < iterations){
+			checkAborted();
+			IterationMetrics metrics = isObserved()? new IterationMetrics(restart, seed, iter) : null;
+			long t = (metrics == null)? 0 : System.nanoTime();
+			ClusteringEvents.Iteration event = new ClusteringEvents.Iteration();
+			event.begin();
+			iter++;
+			//Assign a random batch to the current representatives
+			for(int b = 0; b < miniBatchSize; b++){
+				batch[b] = r.nextInt(ds.numInstances());
+				assign(kernel, batch[b], centroids, weights, dists, assignment, b);
+			}
+			if(metrics != null){
+				t = metrics.lap(Phase.ASSIGNMENT, t);
+				metrics.addDistanceEvaluations(((long) miniBatchSize)*k);
+				metrics.regions(assignment, k);
 			}
 			
-			//Build the orthopartition
-			Orthopartition pi = new Orthopartition(clustering, data);
+			//Move the running statistics towards the batch, with rate 1/(number of instances seen)
+			for(int b = 0; b < miniBatchSize; b++){
+				int count = assignment.clusters(b, clusters);
+				for(int c = 0; c < count; c++){
+					int j = clusters[c];
+					upperSize[j]++;
+					update(ds, batch[b], upperMean[j], upperCounts[j], upperSize[j]);
+					if(count == 1){
+						lowerSize[j]++;
+						update(ds, batch[b], lowerMean[j], lowerCounts[j], lowerSize[j]);
+					}
+				}
+			}
 			
-			//Recompute the representatives using the weighted mean or mode
-			for(int j = 0; j < pi.getFamily().size(); j++){
-				
-				if(pi.getFamily().get(j).isEmpty()){
+			//Recompute the representatives from the lower and upper regions
+			double[][] old = (centroidTolerance > 0)? copy(centroids) : null;
+			for(int j = 0; j < k; j++){
+				if(upperSize[j] == 0)
 					continue;
+				double cl = wl, cu = wu;
+				if(lowerSize[j] == upperSize[j]){
+					cl = 1;
+					cu = 0;
+				}else if(lowerSize[j] == 0){
+					cl = 0;
+					cu = 1;
 				}
-				
-				List<Instance> lower = new ArrayList<Instance>();
-				List<Instance> upper = new ArrayList<Instance>();
-				for(int instInd = 0; instInd < data.numInstances(); instInd++){
-					if(clustering.get(instInd).contains(j)){
-						if(clustering.get(instInd).size() == 1)
-							lower.add(data.get(instInd));
-						upper.add(data.get(instInd));
-					}		
-				}
-				if(lower.size() == upper.size()){
-					for(int a = 0; a < data.numAttributes(); a++){
-							final int fA = a;
-							if(data.attribute(a).isNumeric()){//if numeric compute mean
-								OptionalDouble avg = upper.stream().mapToDouble(inst -> inst.value(fA)).average();
-								centroids[j].setValue(a, avg.getAsDouble());
-								}else{//if discrete compute mode
-									centroids[j].setValue(a, weightedMode(data, a, pi.getFamily().get(j), 0, 1));
-								}
-					}
-				}else if(lower.size() == 0 && upper.size() != 0){
-					for(int a = 0; a < data.numAttributes(); a++){
-							final int fA = a;
-							if(data.attribute(a).isNumeric()){//if numeric compute mean
-							OptionalDouble avg = upper.stream().mapToDouble(inst -> inst.value(fA)).average();
-							centroids[j].setValue(a, avg.getAsDouble());
-							}else{//if discrete compute mode
-								centroids[j].setValue(a, weightedMode(data, a, pi.getFamily().get(j), 1, 0));
-							}
-					}
-				} else if (upper.size() != 0){
-					for(int a = 0; a < data.numAttributes(); a++){
-							final int fA = a;
-							if(data.attribute(a).isNumeric()){//if numeric compute mean
-								OptionalDouble avgL = lower.stream().mapToDouble(inst -> inst.value(fA)).average();
-								OptionalDouble avgU = upper.stream().mapToDouble(inst -> inst.value(fA)).average();
-								centroids[j].setValue(a, wl*avgL.getAsDouble() + wu*avgU.getAsDouble());
-							}else{//if discrete compute mode
-								centroids[j].setValue(a, weightedMode(data, a, pi.getFamily().get(j), wu, wl));
-							}
-					}
-				}
+				for(int a = 0; a < numAttributes; a++)
+					if(ds.isNumeric(a))
+						centroids[j][a] = (cu == 0)? lowerMean[j][a] : 
+							(cl == 0)? upperMean[j][a] : cl*lowerMean[j][a] + cu*upperMean[j][a];
+					else
+						centroids[j][a] = weightedMode(lowerCounts[j][a], upperCounts[j][a], cu, cl);
+			}
+			boolean converged = old != null && maxShift(old, centroids, weights) <= centroidTolerance;
+			if(metrics != null){
+				metrics.lap(Phase.CENTROIDS, t);
+				metrics.finish(Double.NaN);
+				fireIterationCompleted(metrics);
 			}
-			//Recomputes the weight
-			if(reweight)
-				weightAttributes(data, new Orthopartition(clustering, data));
-			//If the new clustering is better than the old substitute the representatives
-			if(computeDaviesBouldin(data, pi, this.centroids, weights) > computeDaviesBouldin(data, pi, centroids, weights) || o == null){
-				this.centroids = Arrays.copyOf(centroids, centroids.length);
-				o = pi;
+			commit(event, restart, iter - 1, assignment);
+			if(converged){
+				reason = StopReason.CENTROID_SHIFT;
+				break;
 			}
 		}
+		
+		//Compute the rough clustering of the whole dataset, its metrics are notified as a further iteration
+		IterationMetrics metrics = isObserved()? new IterationMetrics(restart, seed, iter) : null;
+		long t = (metrics == null)? 0 : System.nanoTime();
+		Memberships clustering = new Memberships(ds.numInstances(), k);
+		assign(kernel, centroids, weights, clustering);
+		if(metrics != null)
+			t = metrics.lap(Phase.ASSIGNMENT, t);
+		Orthopartition pi = new Orthopartition(clustering, universe);
+		if(metrics != null)
+			t = metrics.lap(Phase.ORTHOPARTITION, t);
+		if(reweight)
+			weightAttributes(kernel, universe, pi, weights);
+		if(metrics != null)
+			t = metrics.lap(Phase.REWEIGHT, t);
+		int numClusters = pi.numOrthopairs();
+		double db = computeDaviesBouldin(kernel, clustering, numClusters, centroids, weights);
+		if(metrics != null){
+			metrics.lap(Phase.DAVIES_BOULDIN, t);
+			metrics.regions(clustering, numClusters);
+			metrics.addDistanceEvaluations(((long) ds.numInstances())*k + metrics.getMemberships()
+					+ ((long) numClusters)*(numClusters - 1)/2);
+			metrics.finish(db);
+			fireIterationCompleted(metrics);
+		}
+		Model model = new Model(centroids, weights, pi, db);
+		model.iterationsRun = iter;
+		model.stopReason = reason;
+		return model;
+	}
+	
+	/**
+	 * Compute the rough assignment of an instance: the nearest representative and every
+	 * representative c such that minDist/d(x,c) >= threshold, written in the given slot of the assignment
+	 */
+	private void assign(DistanceKernel kernel, int row, double[][] centroids, double[] weights,
+			double[] dists, Memberships assignment, int slot){
+		double minDist = Double.MAX_VALUE;
+		for(int j = 0; j < centroids.length; j++){
+			dists[j] = kernel.distance(row, centroids[j], weights);
+			if(dists[j] < minDist)
+				minDist = dists[j];
+		}
+		assignment.clear(slot);
+		for(int j = 0; j < centroids.length; j++)
+			if(dists[j] == minDist || minDist/dists[j] >= threshold)
+				assignment.add(slot, j);
+	}
+	
+	/**
+	 * Add an instance to the running statistics of a region of size v (including the instance)
+	 */
+	private static void update(Dataset ds, int row, double[] mean, long[][] counts, long v){
+		for(int a = 0; a < ds.numAttributes(); a++){
+			if(ds.isNumeric(a))
+				mean[a] += (ds.numericColumn(a).get(row) - mean[a])/v;
+			else if(ds.nominalColumn(a).get(row) >= 0)
+				counts[a][ds.nominalColumn(a).get(row)]++;
 		}
 	}
+	
+	@Override
+	protected double discreteRepresentative(CentroidStatistics stats, int j, int numAttr, double wu, double wl){
+		return weightedMode(stats.lowerCounts(j, numAttr), stats.upperCounts(j, numAttr), wu, wl);
+	}
 }
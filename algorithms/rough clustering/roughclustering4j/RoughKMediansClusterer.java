@@ -1,12 +1,5 @@
 package roughclustering;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
-import java.util.OptionalDouble;
-
-import weka.core.DenseInstance;
 import weka.core.Instance;
 import weka.core.Instances;
 
@@ -15,8 +8,7 @@ import weka.core.Instances;
  * @author Andrea Campagner
  *
  */
-public class RoughKMediansClusterer extends RoughClusterer {
-	private long seed = -1;
+public class RoughKMediansClusterer extends RoughCentroidClusterer {
 	
 	/**
 	 * Construct a Rough KMedians rough clusterer
@@ -59,7 +51,8 @@ public class RoughKMediansClusterer extends RoughClusterer {
 	}
 	
 	/**
-	 * Compute the weighted median
+	 * Compute the weighted median, by weighted quickselect over the values of the orthopair
+	 * (the dataset is not modified)
 	 * @param data, dataset
 	 * @param numAttr, index of the attribute to be considered
 	 * @param o, orthopartition
@@ -68,141 +61,142 @@ public class RoughKMediansClusterer extends RoughClusterer {
 	 * @return the index of the median
 	 */
 	public static double weightedMedian(Instances data, int numAttr, Orthopair o, double wu, double wl){
-		data.sort(numAttr);
-		double weight = 0;
-		double totalWeight = 0;
-		
-		for(Instance i : o.getP()){
-			totalWeight += wl;
+		int n = o.lower().size() + o.boundary().size();
+		double[] values = new double[n];
+		double[] weights = new double[n];
+		int i = 0;
+		for(Instance x : o.lower()){
+			values[i] = x.value(numAttr);
+			weights[i++] = wl;
+		}
+		for(Instance x : o.boundary()){
+			values[i] = x.value(numAttr);
+			weights[i++] = wu;
+		}
+		return WeightedMedian.select(values, weights, n);
+	}
+
+
+	/**
+	 * Compute the weighted median on the columnar view of the dataset, in linear time: the median of a
+	 * discrete attribute is computed from the value counts of the two regions, the one of a numeric
+	 * attribute by weighted quickselect
+	 * @param ds, columnar dataset
+	 * @param numAttr, index of the attribute to be considered
+	 * @param lower, indices of the instances in the lower region
+	 * @param boundary, indices of the instances in the boundary
+	 * @param wu, upper region weight
+	 * @param wl, lower region weight
+	 * @return the median
+	 */
+	public static double weightedMedian(Dataset ds, int numAttr, int[] lower, int[] boundary, double wu, double wl){
+		if(!ds.isNumeric(numAttr)){
+			NominalColumn column = ds.nominalColumn(numAttr);
+			long[] lowerCounts = new long[ds.numValues(numAttr)];
+			long lowerMissing = 0;
+			for(int i : lower)
+				if(column.get(i) < 0)
+					lowerMissing++;
+				else
+					lowerCounts[column.get(i)]++;
+			//the upper region includes the lower one
+			long[] upperCounts = lowerCounts.clone();
+			long upperMissing = lowerMissing;
+			for(int i : boundary)
+				if(column.get(i) < 0)
+					upperMissing++;
+				else
+					upperCounts[column.get(i)]++;
+			return weightedMedian(lowerCounts, upperCounts, lowerMissing, upperMissing, wu, wl);
+		}
+		int n = lower.length + boundary.length;
+		double[] values = new double[n];
+		double[] weights = new double[n];
+		NumericColumn column = ds.numericColumn(numAttr);
+		for(int i = 0; i < lower.length; i++){
+			values[i] = column.get(lower[i]);
+			weights[i] = wl;
+		}
+		for(int i = 0; i < boundary.length; i++){
+			values[lower.length + i] = column.get(boundary[i]);
+			weights[lower.length + i] = wu;
+		}
+		return WeightedMedian.select(values, weights, n);
+	}
+	
+	/**
+	 * Compute the weighted median from the value counts of the lower and upper regions of a cluster,
+	 * with the same result of {@link #weightedMedian(Dataset, int, int[], int[], double, double)}:
+	 * the values (indices of the discrete values, missing values last) are merged as the sorted values
+	 * of the two regions
+	 * @param lower, number of instances in the lower region with each value
+	 * @param upper, number of instances in the upper region with each value
+	 * @param lowerMissing, number of instances in the lower region with a missing value
+	 * @param upperMissing, number of instances in the upper region with a missing value
+	 * @param wu, upper region weight
+	 * @param wl, lower region weight
+	 * @return the median
+	 */
+	public static double weightedMedian(long[] lower, long[] upper, long lowerMissing, long upperMissing, 
+			double wu, double wl){
+		//Number of instances of the lower region and of the boundary with each value, then with a missing value
+		int m = lower.length;
+		long[] l = new long[m + 1];
+		long[] b = new long[m + 1];
+		for(int v = 0; v < m; v++){
+			l[v] = lower[v];
+			b[v] = upper[v] - lower[v];
 		}
-		
-		for(Instance i : o.getBnd()){
-			totalWeight += wu;
+		l[m] = lowerMissing;
+		b[m] = upperMissing - lowerMissing;
+		long nl = 0, nb = 0;
+		for(int v = 0; v <= m; v++){
+			nl += l[v];
+			nb += b[v];
 		}
-		Orthopair tmp = new Orthopair(o);
-		tmp.getP().addAll(tmp.getBnd());
-		Instance[] insts = new Instance[tmp.getP().size()];
-		tmp.getP().toArray(insts);
-		Arrays.sort(insts, (x,y) -> (x.value(numAttr) < y.value(numAttr)? -1 :
-			(x.value(numAttr) == y.value(numAttr))? 0 : 1 ));
-		int ind = -1;
+		double totalWeight = wl*nl + wu*nb;
+		double weight = 0;
+		int il = next(l, 0), ib = next(b, 0);
+		double value = Double.NaN;
 		while(weight < totalWeight/2){
-			ind++;
-			if(o.getP().contains(insts[ind]))
+			if(ib > m || (il <= m && value(il, m) <= value(ib, m))){
+				value = value(il, m);
+				l[il]--;
+				il = next(l, il);
 				weight += wl;
-			else
+			}else{
+				value = value(ib, m);
+				b[ib]--;
+				ib = next(b, ib);
 				weight += wu;
+			}
+		}
+		if(weight == totalWeight/2){
+			double next = (ib > m || (il <= m && value(il, m) <= value(ib, m)))? value(il, m) : value(ib, m);
+			return (value + next)/2;
 		}
-		double median = (weight == totalWeight/2)? 
-				(insts[ind].value(numAttr) + insts[ind+1].value(numAttr))/2 :
-				insts[ind].value(numAttr);
-		return median;		
+		return value;
+	}
+	
+	/**
+	 * Get the first value from v on with some instance, counts.length if there is none
+	 */
+	private static int next(long[] counts, int v){
+		while(v < counts.length && counts[v] == 0)
+			v++;
+		return v;
+	}
+	
+	/**
+	 * Get the value of the given index, NaN for the missing values
+	 */
+	private static double value(int v, int m){
+		return (v >= m)? Double.NaN : v;
 	}
-
 
 	@Override
-	public void buildClusterer(Instances data) throws Exception{
-		for(int r = 0; r < restarts; r++){
-		int card = data.numInstances();
-		ArrayList<ArrayList<Integer>> clustering = new ArrayList<ArrayList<Integer>>(
-				Collections.nCopies(card, new ArrayList<Integer>()));
-		
-		//Set the cluster representatives
-		weights = new double[data.numAttributes()];
-		for(int i = 0; i < weights.length; i++)
-			weights[i] = 1.0/(data.numAttributes() - 1);
-		Instance[] centroids;
-		centroids = setSeed(data, seed);
-		if(r == 0)
-		this.centroids = Arrays.copyOf(centroids, k);
-		
-		
-		
-		//Foreach iteration
-		for(int i = 0; i < iterations; i++){
-			//Compute the rough clustering
-			for(int instInd = 0; instInd < data.numInstances(); instInd++){
-				Instance inst = new DenseInstance(data.get(instInd));
-				double[] dists = new double[k];
-				double minDist = Double.MAX_VALUE;
-				clustering.set(instInd, new ArrayList<Integer>());
-				
-				for(int j = 0; j < k; j++){
-					dists[j] = computeDistance(data, inst, centroids[j], weights);
-					//System.out.println(dists[j]);
-					if(dists[j] < minDist)
-						minDist = dists[j];
-				}
-				//System.out.println(minDist);
-				for(int j = 0; j < k; j++){
-					if(dists[j] == minDist || minDist/dists[j] >= threshold)
-						clustering.get(instInd).add(j);
-				}
-			}
-			
-			//Build the orthopartition
-			Orthopartition pi = new Orthopartition(clustering, data);
-			
-			//Recompute the representatives using the weighted median
-			for(int j = 0; j < pi.getFamily().size(); j++){
-				
-				if(pi.getFamily().get(j).isEmpty()){
-					continue;
-				}
-				
-				List<Instance> lower = new ArrayList<Instance>();
-				List<Instance> upper = new ArrayList<Instance>();
-				for(int instInd = 0; instInd < data.numInstances(); instInd++){
-					if(clustering.get(instInd).contains(j)){
-						if(clustering.get(instInd).size() == 1)
-							lower.add(data.get(instInd));
-						upper.add(data.get(instInd));
-					}		
-				}
-				if(lower.size() == upper.size()){
-					for(int a = 0; a < data.numAttributes(); a++){
-							final int fA = a;
-							if(data.attribute(a).isNumeric()){
-								OptionalDouble avg = upper.stream().mapToDouble(inst -> inst.value(fA)).average();
-								centroids[j].setValue(a, avg.getAsDouble());
-								}else{
-									centroids[j].setValue(a, weightedMedian(data, a, pi.getFamily().get(j), 0, 1));
-								}
-						
-					}
-				}else if(lower.size() == 0 && upper.size() != 0){
-					for(int a = 0; a < data.numAttributes(); a++){
-							final int fA = a;
-							if(data.attribute(a).isNumeric()){
-							OptionalDouble avg = upper.stream().mapToDouble(inst -> inst.value(fA)).average();
-							centroids[j].setValue(a, avg.getAsDouble());
-							}else{
-								centroids[j].setValue(a, weightedMedian(data, a, pi.getFamily().get(j), 1, 0));
-							}
-					}
-				} else if (upper.size() != 0){
-					for(int a = 0; a < data.numAttributes(); a++){
-							final int fA = a;
-							if(data.attribute(a).isNumeric()){
-								OptionalDouble avgL = lower.stream().mapToDouble(inst -> inst.value(fA)).average();
-								OptionalDouble avgU = upper.stream().mapToDouble(inst -> inst.value(fA)).average();
-								centroids[j].setValue(a, wl*avgL.getAsDouble() + wu*avgU.getAsDouble());
-							}else{
-								centroids[j].setValue(a, weightedMedian(data, a, pi.getFamily().get(j), wu, wl));
-							}
-					}
-				}
-			}
-			//Recompute the weights
-			if(reweight)
-			weightAttributes(data, new Orthopartition(clustering, data));
-			
-			//If the new clustering is better than the old substitute the representatives
-			if(computeDaviesBouldin(data, pi, this.centroids, weights) > computeDaviesBouldin(data, pi, centroids, weights) || o == null){
-				this.centroids = Arrays.copyOf(centroids, centroids.length);
-				o = pi;
-			}
-		}
-		}
+	protected double discreteRepresentative(CentroidStatistics stats, int j, int numAttr, double wu, double wl){
+		return weightedMedian(stats.lowerCounts(j, numAttr), stats.upperCounts(j, numAttr), 
+				stats.lowerMissing(j, numAttr), stats.upperMissing(j, numAttr), wu, wl);
 	}
 }
@@ -1,11 +1,8 @@
 package roughclustering;
 
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.stream.Collectors;
-
 import weka.core.Instance;
 import weka.core.Instances;
+import roughclustering.IterationMetrics.Phase;
 
 /**
  * Implements a Rough Refinement rough clusterer
@@ -16,110 +13,120 @@ public class RoughRefinementClusterer extends RoughClusterer{
 
 	@Override
 	public void buildClusterer(Instances data) throws Exception {
+		buildClusterer(new ColumnarDataset(data));
+	}
+
+	/**
+	 * Compute the rough clustering of a columnar dataset, the training runs on the columns
+	 * @param data, columnar dataset
+	 * @throws Exception
+	 */
+	@Override
+	public void buildClusterer(Dataset data) throws Exception {
+		kernel = new DistanceKernel(data);
 		weights = new double[data.numAttributes()];
 		for(int i = 0; i < weights.length; i++)
 			weights[i] = 1.0/(data.numAttributes()-1);
+		Universe universe = new Universe(data);
 		Orthopartition p = null;
+		Memberships clustering = null;
+		int boundary = 0;
+		long start = isObserved()? System.nanoTime() : 0;
+		long bytes = isObserved()? IterationMetrics.allocatedBytes() : -1;
 		for(int k = 0; k < iterations; k++){
+			//The metrics are only collected if some listener is attached
+			IterationMetrics metrics = isObserved()? new IterationMetrics(0, 0, k) : null;
+			long t = (metrics == null)? 0 : System.nanoTime();
+			ClusteringEvents.Iteration event = new ClusteringEvents.Iteration();
+			event.begin();
+			
 			//Build the orthocovering defined by the instances
-			ArrayList<Orthopair> family = new ArrayList<Orthopair>();
-			for(int i1 = 0; i1 < data.numInstances(); i1++){
-				HashSet<Instance> pos = new HashSet<Instance>();
-				HashSet<Instance> neg = new HashSet<Instance>();
-				for(int i2 = 0; i2 < data.numInstances(); i2++){
-					double value = computeDistance(data, data.get(i1), data.get(i2), weights);
-					if(i1==i2 || value <= 1 - threshold)
-						pos.add(data.get(i2));
-					else
-						neg.add(data.get(i2));
-				}
-				Orthopair op = new Orthopair(neg, pos, new HashSet<Instance>());
-				family.add(op);
-			}
+			int[][] positive = neighbourhoods(data.numInstances(), 1 - threshold);
+			if(metrics != null)
+				t = metrics.lap(Phase.ASSIGNMENT, t);
+			int[] selected;
 			//if useHeuristic compact the orthocovering
-			if(useHeuristic){
-				ArrayList<Orthopair> tf = new ArrayList<Orthopair>();
-				HashSet<Instance> s = new HashSet<Instance>();
-				while(!s.equals(family.get(0).getUniverse())){
-					int max = 0;
-					int im = -1;
-					for(int io = 0; io < family.size(); io++){
-						Orthopair to = new Orthopair(family.get(io));
-						to.getP().addAll(s);
-						if(to.getP().size() > max){
-							max = to.getP().size();
-							im = io;
-						}
-					}
-					s.addAll(family.get(im).getP());
-					tf.add(family.get(im));
-				}
-				family = tf;
+			if(useHeuristic)
+				selected = GreedySetCover.cover(data.numInstances(), positive);
+			else{
+				selected = new int[data.numInstances()];
+				for(int i1 = 0; i1 < selected.length; i1++)
+					selected[i1] = i1;
 			}
-			p = new Orthopartition(family);
-			boolean modified = true;
+			int[][] family = new int[selected.length][];
+			for(int c = 0; c < selected.length; c++)
+				family[c] = positive[selected[c]];
 			
 			//Merge the clusters according to their overlap
-			while(modified){
-				modified = false;
-				ArrayList<Orthopair> erased = new ArrayList<Orthopair>();
-				ArrayList<Orthopair> added = new ArrayList<Orthopair>();
-				for(Orthopair oi: p.getFamily()){
-					if(!erased.contains(oi)){
-						for(Orthopair oj : p.getFamily()){
-							if(oi != oj && !erased.contains(oi) && !erased.contains(oj)){
-								Orthopair tmp = new Orthopair(oi);
-								tmp.getP().addAll(oj.getP());
-								tmp.getN().removeAll(oj.getP());
-								int Nmeet = oi.intersect(oj).getLowerSize();
-								double D = ((double) Nmeet)/(tmp.getLowerSize() - Nmeet);
-								if((oi.getP().containsAll(oj.getP()) || D >= threshold)){
-									erased.add(oi);
-									erased.add(oj);
-									added.add(tmp);
-									modified = true;
-								}
-							}
-						}
-					}
-				}
-				p.getFamily().removeAll(erased);
-				p.getFamily().addAll(added);
-			}
-			for(int i = 0; i < data.numInstances(); i++){
-				final int fI = i;
-				ArrayList<Orthopair> tmp = (ArrayList<Orthopair>) family.stream().filter(o -> o.getP().contains(data.get(fI)))
-						.collect(Collectors.toList());
-				if(tmp.size() != 1)
-					for(Orthopair o : family)
-						if(tmp.contains(o)){
-							o.getP().remove(data.get(i));
-							o.getBnd().add(data.get(i));
-						}
-			}
+			family = ClusterMerger.merge(data.numInstances(), family, threshold);
 			
-			//Check if there is overlap among the orthopairs
-			boolean overlap = false;
-			for(Orthopair o1 : family){
-				for(Orthopair o2: family){
-					Orthopair tmp = new Orthopair(o1);
-					if(o1 != o2 && !tmp.intersect(o2).isEmpty()){
-						overlap = true;
-						break;
-					}
-				}
-				if(overlap)
-					break;
+			//The instances in more than one cluster are moved to the boundaries
+			clustering = new Memberships(data.numInstances(), family.length);
+			for(int c = 0; c < family.length; c++)
+				for(int i : family[c])
+					clustering.add(i, c);
+			
+			//There is overlap among the orthopairs if some instance is in a boundary
+			boundary = clustering.boundary();
+			p = new Orthopartition(clustering, universe);
+			p.overlap = boundary > 0;
+			if(metrics != null)
+				t = metrics.lap(Phase.ORTHOPARTITION, t);
+			weightAttributes(kernel, universe, p, weights);
+			if(metrics != null){
+				metrics.lap(Phase.REWEIGHT, t);
+				metrics.regions(clustering, family.length);
+				metrics.finish(Double.NaN);
+				fireIterationCompleted(metrics);
+			}
+			if(event.shouldCommit()){
+				event.clusterer = getClass().getSimpleName();
+				event.iteration = k;
+				event.instances = data.numInstances();
+				event.k = family.length;
+				event.boundary = boundary;
+				event.commit();
 			}
-			p = new Orthopartition(family, overlap);
-			weightAttributes(data, p);
 		}
-		p.setFamily((ArrayList<Orthopair>) p.getFamily().stream().filter((Orthopair o) -> !o.isEmpty())
-				.collect(Collectors.toList()));
+		if(isObserved()){
+			long allocated = IterationMetrics.allocatedBytes();
+			fireRestartCompleted(new RestartMetrics(0, 0, iterations, null, System.nanoTime() - start, 
+					(bytes < 0 || allocated < 0)? -1 : allocated - bytes, Double.NaN));
+		}
+		//The empty orthopairs are removed, the orthopartition stays in compact form
+		p = new Orthopartition(clustering.compact(), universe);
+		p.overlap = boundary > 0;
 		o = p;
 		
 	}
 
+	/**
+	 * Compute, for each instance, the instances within the given distance (and the instance itself).
+	 * With non-negative weights the distances are queried on a vantage-point tree built for the
+	 * current weights, otherwise all pairs are scanned
+	 * @param n, number of instances
+	 * @param radius, maximum distance
+	 * @return the indices of the neighbours of each instance, in increasing order
+	 * @throws Exception
+	 */
+	protected int[][] neighbourhoods(int n, double radius) throws Exception{
+		int[][] result = new int[n][];
+		if(VantagePointTree.isMetric(weights)){
+			VantagePointTree tree = new VantagePointTree(kernel, weights);
+			for(int i1 = 0; i1 < n; i1++)
+				result[i1] = tree.query(i1, radius);
+		}else{
+			for(int i1 = 0; i1 < n; i1++){
+				IntList indices = new IntList();
+				for(int i2 = 0; i2 < n; i2++)
+					if(i1==i2 || kernel.distance(i1, i2, weights) <= radius)
+						indices.add(i2);
+				result[i1] = indices.toArray();
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Construct a Rough Refinement rough clusterer
 	 * @param iterations, number of iterations
@@ -0,0 +1,403 @@
+package roughclustering;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Implements a streaming Rough KMeans rough clusterer: instances are received one at a time or in
+ * micro-batches, each instance is assigned to the current representatives (with the same rule of
+ * the batch clusterers) and added to the sufficient statistics of the lower and upper regions of its
+ * clusters: counts, sums of the numeric values and value counts of the discrete attributes.
+ * The representatives of the clusters receiving instances are then recomputed from the statistics,
+ * as the weighted means (and weighted modes) of their lower and upper regions.
+ * The first k distinct instances (with no missing values) are used as initial representatives.
+ * The instances are retained, together with their assignment, to build the orthopartition on demand;
+ * if a window size is set only the most recent instances are retained and the oldest ones are
+ * removed from the statistics. The ranges of the numeric attributes are extended as instances
+ * arrive, the attribute weights are not recomputed
+ * @author Andrea Campagner
+ *
+ */
+public class RoughStreamingClusterer extends RoughClusterer {
+
+	protected int windowSize = 0;
+	protected Instances header = null;
+	protected double[][] values;
+	protected int numCentroids;
+	protected long numSeen;
+	//sufficient statistics of the lower and upper regions of each cluster
+	protected long[] lowerSize;
+	protected long[] upperSize;
+	protected double[][] lowerSum;
+	protected double[][] upperSum;
+	protected long[][] lowerValues;
+	protected long[][] upperValues;
+	protected long[][][] lowerCounts;
+	protected long[][][] upperCounts;
+	//retained instances and their assignments, oldest first
+	protected ArrayDeque<Instance> retained;
+	protected ArrayDeque<ArrayList<Integer>> assignments;
+
+	/**
+	 * Construct a streaming Rough KMeans rough clusterer
+	 * @param k, number of clusters
+	 * @param threshold, threshold for insertion into clusters
+	 * @param wu, weight of the upper region
+	 * @param wl, weight of the lower region
+	 */
+	public RoughStreamingClusterer(int k, double threshold, double wu, double wl) {
+		super();
+		this.k = k;
+		this.threshold = threshold;
+		this.wu = wu;
+		this.wl = wl;
+		this.iterations = 1;
+		this.restarts = 1;
+	}
+
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	/**
+	 * Set the number of retained instances
+	 * @param windowSize, number of most recent instances retained, 0 to retain all the instances (default)
+	 */
+	public void setWindowSize(int windowSize) {
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Compute the number of instances received since the last reset
+	 * @return the number of instances
+	 */
+	public long getNumSeen() {
+		return numSeen;
+	}
+
+	/**
+	 * Discard the model and start a new stream with the attributes of the given dataset
+	 * @param header, dataset (only its attributes are used)
+	 */
+	public void reset(Instances header) {
+		this.header = new Instances(header, 0);
+		int numAttributes = header.numAttributes();
+		weights = new double[numAttributes];
+		for(int i = 0; i < weights.length; i++)
+			weights[i] = 1.0/(numAttributes - 1);
+		kernel = DistanceKernel.empty(this.header, weights);
+		values = new double[k][];
+		numCentroids = 0;
+		numSeen = 0;
+		lowerSize = new long[k];
+		upperSize = new long[k];
+		lowerSum = new double[k][numAttributes];
+		upperSum = new double[k][numAttributes];
+		lowerValues = new long[k][numAttributes];
+		upperValues = new long[k][numAttributes];
+		lowerCounts = new long[k][numAttributes][];
+		upperCounts = new long[k][numAttributes][];
+		for(int j = 0; j < k; j++)
+			for(int a = 0; a < numAttributes; a++)
+				if(!header.attribute(a).isNumeric()){
+					lowerCounts[j][a] = new long[header.attribute(a).numValues()];
+					upperCounts[j][a] = new long[header.attribute(a).numValues()];
+				}
+		retained = new ArrayDeque<Instance>();
+		assignments = new ArrayDeque<ArrayList<Integer>>();
+		centroids = null;
+		o = null;
+	}
+
+	/**
+	 * Start a new stream with the instances of the given dataset
+	 * @param data, dataset
+	 */
+	@Override
+	public void buildClusterer(Instances data) throws Exception {
+		reset(data);
+		update(data);
+	}
+
+	/**
+	 * Start a new stream with the instances of the given columnar dataset. The instances are
+	 * materialized: the dataset is received as a single micro-batch and the retained instances
+	 * are Weka instances, from which the orthopartition is built
+	 * @param ds, columnar dataset
+	 */
+	@Override
+	public void buildClusterer(Dataset ds) throws Exception {
+		buildClusterer(ds.getData());
+	}
+
+	/**
+	 * Receive an instance, the first instance of a stream must belong to a dataset unless
+	 * the stream was started by reset
+	 * @param x, instance
+	 * @return the clusters the instance is assigned to
+	 * @throws Exception - the stream has no attributes: it was not reset and the instance has no dataset
+	 */
+	public ArrayList<Integer> update(Instance x) throws Exception {
+		if(header == null && x.dataset() == null)
+			throw new Exception("The instance has no dataset: call reset with the header of the stream first");
+		Instances batch = new Instances((header == null)? x.dataset() : header, 1);
+		batch.add(x);
+		return update(batch).get(0);
+	}
+
+	/**
+	 * Receive a micro-batch of instances: the instances are assigned to the representatives
+	 * before the update, and the representatives are updated once
+	 * @param batch, instances
+	 * @return the clusters each instance is assigned to
+	 * @throws Exception
+	 */
+	public ArrayList<ArrayList<Integer>> update(Instances batch) throws Exception {
+		ClusteringEvents.Assignment event = new ClusteringEvents.Assignment();
+		event.begin();
+		if(header == null)
+			reset(batch);
+		for(Instance x : batch)
+			kernel.widen(x);
+
+		//The first distinct instances become the initial representatives
+		ArrayList<ArrayList<Integer>> result = new ArrayList<ArrayList<Integer>>();
+		for(int i = 0; i < batch.numInstances(); i++)
+			result.add(null);
+		for(int i = 0; i < batch.numInstances() && numCentroids < k; i++){
+			double[] x = batch.get(i).toDoubleArray();
+			boolean distinct = true;
+			for(double v : x)
+				if(Double.isNaN(v))
+					distinct = false;
+			for(int j = 0; j < numCentroids; j++)
+				if(Arrays.equals(values[j], x))
+					distinct = false;
+			if(distinct){
+				values[numCentroids] = x;
+				ArrayList<Integer> l = new ArrayList<Integer>();
+				l.add(numCentroids++);
+				result.set(i, l);
+			}
+		}
+
+		//Assign the other instances to the current representatives
+		ForkJoinPool pool = getPool();
+		if(pool == null || batch.numInstances() <= ASSIGNMENT_GRAIN)
+			assign(batch, result, 0, batch.numInstances());
+		else//each instance is independent, the tasks write disjoint slots of the result
+			pool.invoke(new RangeTask((from, to) -> assign(batch, result, from, to), 0, batch.numInstances(),
+					ASSIGNMENT_GRAIN));
+
+		//Update the statistics and retain the instances
+		boolean[] touched = new boolean[k];
+		for(int i = 0; i < batch.numInstances(); i++){
+			Instance x = batch.get(i);
+			account(x, result.get(i), 1, touched);
+			retained.addLast(x);
+			assignments.addLast(result.get(i));
+			numSeen++;
+		}
+		while(windowSize > 0 && retained.size() > windowSize)
+			account(retained.pollFirst(), assignments.pollFirst(), -1, touched);
+		for(int j = 0; j < numCentroids; j++)
+			if(touched[j])
+				updateCentroid(j);
+		centroids = null;
+		o = null;
+		if(event.shouldCommit()){
+			event.clusterer = getClass().getSimpleName();
+			event.instances = batch.numInstances();
+			event.k = numCentroids;
+			event.boundary = ClusteringEvents.boundary(result);
+			event.commit();
+		}
+		return result;
+	}
+
+	/**
+	 * Compute the rough assignment of the instances of the batch in [from, to), except the
+	 * initial representatives
+	 */
+	private void assign(Instances batch, ArrayList<ArrayList<Integer>> result, int from, int to){
+		double[] dists = new double[numCentroids];
+		for(int i = from; i < to; i++)
+			if(result.get(i) == null)
+				result.set(i, assign(batch.get(i), dists));
+	}
+
+	/**
+	 * Compute the rough assignment of an instance: the nearest representative and every
+	 * representative c such that minDist/d(x,c) >= threshold
+	 */
+	private ArrayList<Integer> assign(Instance x, double[] dists){
+		double minDist = Double.MAX_VALUE;
+		for(int j = 0; j < numCentroids; j++){
+			dists[j] = kernel.distance(x, values[j], weights);
+			if(dists[j] < minDist)
+				minDist = dists[j];
+		}
+		ArrayList<Integer> l = new ArrayList<Integer>();
+		for(int j = 0; j < numCentroids; j++)
+			if(dists[j] == minDist || minDist/dists[j] >= threshold)
+				l.add(j);
+		return l;
+	}
+
+	/**
+	 * Add (sign = 1) or remove (sign = -1) an instance from the statistics of its clusters
+	 */
+	private void account(Instance x, ArrayList<Integer> l, int sign, boolean[] touched){
+		for(int j : l){
+			touched[j] = true;
+			upperSize[j] += sign;
+			add(x, upperSum[j], upperValues[j], upperCounts[j], sign);
+			if(l.size() == 1){
+				lowerSize[j] += sign;
+				add(x, lowerSum[j], lowerValues[j], lowerCounts[j], sign);
+			}
+		}
+	}
+
+	private void add(Instance x, double[] sum, long[] numValues, long[][] counts, int sign){
+		for(int a = 0; a < header.numAttributes(); a++){
+			double v = x.value(a);
+			if(Double.isNaN(v))
+				continue;
+			if(counts[a] == null){
+				sum[a] += sign*v;
+				numValues[a] += sign;
+			}else
+				counts[a][(int) v] += sign;
+		}
+	}
+
+	/**
+	 * Recompute a representative from the statistics of its lower and upper regions, a cluster
+	 * with no instances keeps its representative
+	 */
+	private void updateCentroid(int j){
+		if(upperSize[j] == 0)
+			return;
+		double cl = wl, cu = wu;
+		if(lowerSize[j] == upperSize[j]){
+			cl = 1;
+			cu = 0;
+		}else if(lowerSize[j] == 0){
+			cl = 0;
+			cu = 1;
+		}
+		for(int a = 0; a < header.numAttributes(); a++){
+			if(lowerCounts[j][a] != null)
+				values[j][a] = weightedMode(lowerCounts[j][a], upperCounts[j][a], cu, cl);
+			else if(cu == 0){
+				if(lowerValues[j][a] > 0)
+					values[j][a] = lowerSum[j][a]/lowerValues[j][a];
+			}else if(upperValues[j][a] > 0){
+				double upperMean = upperSum[j][a]/upperValues[j][a];
+				if(cl == 0 || lowerValues[j][a] == 0)
+					values[j][a] = upperMean;
+				else
+					values[j][a] = cl*lowerSum[j][a]/lowerValues[j][a] + cu*upperMean;
+			}
+		}
+	}
+
+	/**
+	 * Get the current cluster representatives
+	 * @return the representatives, as instances of the stream
+	 */
+	public Instance[] getCentroids() {
+		if(centroids == null && header != null){
+			centroids = new Instance[numCentroids];
+			for(int j = 0; j < numCentroids; j++){
+				centroids[j] = new DenseInstance(1.0, values[j].clone());
+				centroids[j].setDataset(header);
+			}
+		}
+		return centroids;
+	}
+
+	/**
+	 * Get the orthopartition of the retained instances, with the assignments they received
+	 * when they arrived. The snapshot is rebuilt only if instances arrived since the last call
+	 * @return the orthopartition, null if no instance was received
+	 */
+	@Override
+	public Orthopartition getClustering() {
+		if(o == null && retained != null && !retained.isEmpty()){
+			Instances snapshot = new Instances(header, retained.size());
+			ArrayList<ArrayList<Integer>> lists = new ArrayList<ArrayList<Integer>>();
+			Iterator<ArrayList<Integer>> l = assignments.iterator();
+			for(Instance x : retained){
+				snapshot.add(x);
+				lists.add(new ArrayList<Integer>(l.next()));
+			}
+			try{
+				o = new Orthopartition(lists, snapshot);
+			}catch(Exception e){
+				throw new IllegalStateException(e);
+			}
+		}
+		return o;
+	}
+
+	/**
+	 * Compute the nearest representative of the given instance, the model is not updated
+	 * @param inst, instance
+	 * @param data, dataset (not used)
+	 * @return the index of the nearest representative
+	 */
+	@Override
+	public int clusterInstance(Instance inst, Instances data) throws Exception {
+		ClusteringEvents.Scoring event = new ClusteringEvents.Scoring();
+		event.begin();
+		double minDist = Double.MAX_VALUE;
+		int ind = -1;
+		for(int j = 0; j < numCentroids; j++){
+			double d = kernel.distance(inst, values[j], weights);
+			if(d < minDist){
+				minDist = d;
+				ind = j;
+			}
+		}
+		if(event.shouldCommit()){
+			event.clusterer = getClass().getSimpleName();
+			event.instances = 1;
+			event.k = numCentroids;
+			event.commit();
+		}
+		return ind;
+	}
+
+	/**
+	 * Compute the assignment of the given instances, the model is not updated
+	 * @param data, dataset
+	 * @return the resulting orthopartition
+	 */
+	@Override
+	public Orthopartition clusterInstances(Instances data) throws Exception {
+		ClusteringEvents.Scoring event = new ClusteringEvents.Scoring();
+		event.begin();
+		ArrayList<ArrayList<Integer>> clustering = new ArrayList<ArrayList<Integer>>();
+		double[] dists = new double[numCentroids];
+		for(Instance x : data)
+			clustering.add(assign(x, dists));
+		Orthopartition result = new Orthopartition(clustering, data);
+		if(event.shouldCommit()){
+			event.clusterer = getClass().getSimpleName();
+			event.instances = data.numInstances();
+			event.k = numCentroids;
+			event.boundary = ClusteringEvents.boundary(clustering);
+			event.commit();
+		}
+		return result;
+	}
+}
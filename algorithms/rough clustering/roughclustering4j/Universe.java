@@ -0,0 +1,160 @@
+package roughclustering;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Implements an indexed universe of instances, shared by the bitset-backed orthopairs.
+ * Each instance is assigned a dense index in [0, size()), so that subsets of the
+ * universe can be represented as arrays of 64-bit words.
+ * The universe of a columnar dataset only materializes its instances when they are requested
+ * @author Andrea Campagner
+ *
+ */
+public class Universe {
+	private final int size;
+	private final Dataset source;
+	private volatile Instance[] instances;
+	private IdentityHashMap<Instance, Integer> index;
+
+	/**
+	 * Construct the universe of the given dataset, instances are indexed in dataset order
+	 * @param data, dataset
+	 */
+	public Universe(Instances data){
+		source = null;
+		size = data.numInstances();
+		index(data);
+	}
+
+	/**
+	 * Construct the universe of the given columnar dataset, instances are indexed in dataset order.
+	 * The instances are only materialized when they are first requested
+	 * @param data, columnar dataset
+	 */
+	public Universe(Dataset data){
+		source = data;
+		size = data.numInstances();
+	}
+
+	/**
+	 * Construct the universe of the given collection of instances, instances are indexed in iteration order
+	 * @param data, a collection of instances
+	 */
+	public Universe(Collection<Instance> data){
+		source = null;
+		size = data.size();
+		index(data);
+	}
+
+	private void index(Collection<Instance> data){
+		Instance[] result = new Instance[size];
+		index = new IdentityHashMap<Instance, Integer>(size);
+		int i = 0;
+		for(Instance x : data){
+			result[i] = x;
+			index.put(x, i);
+			i++;
+		}
+		instances = result;
+	}
+
+	/**
+	 * Checks whether this is a universe of the given instances, in any order
+	 * @param data, a collection of instances
+	 * @return whether the collection holds exactly the instances of this universe
+	 */
+	public boolean isUniverseOf(Collection<Instance> data){
+		if(data.size() != size)
+			return false;
+		for(Instance x : data)
+			if(indexOf(x) < 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Get the instances of the universe, materializing them on first use
+	 */
+	private Instance[] instances(){
+		Instance[] result = instances;
+		if(result == null){
+			synchronized(this){
+				if(instances == null)
+					index(source.getData());
+				result = instances;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Compute the number of instances in the universe
+	 * @return the size of the universe
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Compute the number of 64-bit words needed to represent a subset of the universe
+	 * @return the number of words
+	 */
+	public int words(){
+		return Bitsets.words(size);
+	}
+
+	/**
+	 * Get the instance with the given index
+	 * @param i, index
+	 * @return the instance
+	 */
+	public Instance get(int i){
+		return instances()[i];
+	}
+
+	/**
+	 * Compute the index of the given instance
+	 * @param x, an instance
+	 * @return the index of the instance, -1 if it does not belong to the universe
+	 */
+	public int indexOf(Instance x){
+		instances();
+		Integer i = index.get(x);
+		return (i == null)? -1 : i;
+	}
+
+	/**
+	 * Convert a set of instances to its bitset representation
+	 * @param s, a collection of instances
+	 * @return the bitset representation of s
+	 * @throws Exception - some instance does not belong to the universe
+	 */
+	public long[] toBits(Collection<Instance> s) throws Exception{
+		long[] bits = new long[words()];
+		for(Instance x : s){
+			int i = indexOf(x);
+			if(i < 0)
+				throw new Exception("Instance not in universe");
+			Bitsets.set(bits, i);
+		}
+		return bits;
+	}
+
+	/**
+	 * Convert a bitset to the corresponding set of instances
+	 * @param bits, a bitset over the universe
+	 * @return the set of instances
+	 */
+	public HashSet<Instance> toSet(long[] bits){
+		Instance[] instances = instances();
+		HashSet<Instance> result = new HashSet<Instance>();
+		for(int i = Bitsets.nextSetBit(bits, 0); i >= 0; i = Bitsets.nextSetBit(bits, i + 1))
+			result.add(instances[i]);
+		return result;
+	}
+}
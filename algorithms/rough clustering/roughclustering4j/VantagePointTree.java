@@ -0,0 +1,171 @@
+package roughclustering;
+
+import java.util.Arrays;
+
+/**
+ * Implements a vantage-point tree over the instances of a dataset, with the weighted distance
+ * of a distance kernel, answering radius queries without scanning all the instances.
+ * The tree is built for a given vector of weights and must be rebuilt when the weights change.
+ * Pruning relies on the triangle inequality, which holds when the weights are non-negative:
+ * the tree only discards subtrees that are farther than the radius by a small tolerance, and the
+ * candidates are checked with the same distance evaluation of a full scan, so the results are
+ * exactly those of the scan.
+ * Instances whose distances are undefined (e.g. missing numeric values) are not indexed
+ * @author Andrea Campagner
+ *
+ */
+public class VantagePointTree {
+	private static final int LEAF_SIZE = 16;
+	private static final double TOLERANCE = 1e-9;
+
+	private final DistanceKernel kernel;
+	private final double[] weights;
+	//indexed instances, each subtree is a range [lo, hi) whose first element is the vantage point
+	private final int[] items;
+	//radius of the vantage point of each range: the first half is within it, the second half is not closer
+	private final double[] mu;
+	private final double slack;
+
+	/**
+	 * Construct the vantage-point tree of the instances of the kernel with defined distances
+	 * @param kernel, distance kernel of the dataset
+	 * @param weights, attribute weights, must be non-negative
+	 * @throws Exception - some weight is negative
+	 */
+	public VantagePointTree(DistanceKernel kernel, double[] weights) throws Exception{
+		this.kernel = kernel;
+		this.weights = weights.clone();
+		double scale = 0;
+		for(double w : weights){
+			if(!(w >= 0))
+				throw new Exception("Negative weights do not define a metric");
+			scale += w;
+		}
+		slack = TOLERANCE*Math.max(scale, 1);
+		int n = kernel.getColumns().numInstances();
+		IntList valid = new IntList(n);
+		for(int i = 0; i < n; i++)
+			if(isIndexed(kernel, i, weights))
+				valid.add(i);
+		items = valid.toArray();
+		mu = new double[items.length];
+		build(0, items.length, new double[items.length]);
+	}
+
+	/**
+	 * Checks whether the distances of the given instance are defined, i.e. if its distance from
+	 * itself is not NaN
+	 * @param kernel, distance kernel of the dataset
+	 * @param row, index of the instance
+	 * @param weights, attribute weights
+	 * @return whether the instance can be indexed
+	 */
+	public static boolean isIndexed(DistanceKernel kernel, int row, double[] weights){
+		return !Double.isNaN(kernel.distance(row, row, weights));
+	}
+
+	/**
+	 * Checks whether the weights can be used with a vantage-point tree
+	 * @param weights, attribute weights
+	 * @return whether all the weights are non-negative
+	 */
+	public static boolean isMetric(double[] weights){
+		for(double w : weights)
+			if(!(w >= 0))
+				return false;
+		return true;
+	}
+
+	private void build(int lo, int hi, double[] dist){
+		if(hi - lo <= LEAF_SIZE)
+			return;
+		//The element in the middle of the range is used as vantage point
+		swap(lo, (lo + hi) >>> 1);
+		int v = items[lo];
+		for(int e = lo + 1; e < hi; e++)
+			dist[e] = kernel.distance(v, items[e], weights);
+		int mid = (lo + 1 + hi) >>> 1;
+		select(dist, lo + 1, hi, mid);
+		mu[lo] = dist[mid];
+		build(lo + 1, mid, dist);
+		build(mid, hi, dist);
+	}
+
+	/**
+	 * Reorder [lo, hi) so that position k holds the element of rank k, smaller elements before it
+	 * and larger ones after it (quickselect)
+	 */
+	private void select(double[] dist, int lo, int hi, int k){
+		while(hi - lo > 1){
+			double pivot = dist[(lo + hi) >>> 1];
+			int i = lo, j = hi - 1;
+			while(i <= j){
+				while(dist[i] < pivot)
+					i++;
+				while(dist[j] > pivot)
+					j--;
+				if(i <= j){
+					swap(dist, i, j);
+					i++;
+					j--;
+				}
+			}
+			if(k <= j)
+				hi = j + 1;
+			else if(k >= i)
+				lo = i;
+			else
+				return;
+		}
+	}
+
+	private void swap(int i, int j){
+		int t = items[i];
+		items[i] = items[j];
+		items[j] = t;
+	}
+
+	private void swap(double[] dist, int i, int j){
+		double t = dist[i];
+		dist[i] = dist[j];
+		dist[j] = t;
+		swap(i, j);
+	}
+
+	/**
+	 * Compute the instances within the given distance from an instance (including the instance itself)
+	 * @param row, index of the instance
+	 * @param radius, maximum distance
+	 * @return the indices of the instances x such that x = row or d(row, x) <= radius, in increasing order
+	 */
+	public int[] query(int row, double radius){
+		IntList result = new IntList();
+		result.add(row);
+		if(isIndexed(kernel, row, weights))
+			query(row, radius, 0, items.length, result);
+		int[] r = result.toArray();
+		Arrays.sort(r);
+		return r;
+	}
+
+	private void query(int row, double radius, int lo, int hi, IntList result){
+		if(hi - lo <= LEAF_SIZE){
+			for(int e = lo; e < hi; e++)
+				check(row, items[e], kernel.distance(row, items[e], weights), radius, result);
+			return;
+		}
+		double d = kernel.distance(row, items[lo], weights);
+		check(row, items[lo], d, radius, result);
+		int mid = (lo + 1 + hi) >>> 1;
+		//d(row, x) >= d - d(v, x) >= d - mu for the first half, >= mu - d for the second
+		if(d - mu[lo] <= radius + slack)
+			query(row, radius, lo + 1, mid, result);
+		if(mu[lo] - d <= radius + slack)
+			query(row, radius, mid, hi, result);
+	}
+
+	private static void check(int row, int x, double d, double radius, IntList result){
+		if(x != row && d <= radius)
+			result.add(x);
+	}
+}
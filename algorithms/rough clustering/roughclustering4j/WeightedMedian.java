@@ -0,0 +1,131 @@
+package roughclustering;
+
+/**
+ * Implements the weighted median of a set of weighted values by quickselect, in expected linear time.
+ * The median is the value at the first position, in increasing order of the values (missing values
+ * last), where the cumulated weight reaches half of the total weight; if the cumulated weight there
+ * is exactly half of the total weight the median is the mean of that value and of the next one.
+ * The selection partitions the values around a pivot in three ranges (smaller, equal and larger values)
+ * and only continues in the range containing the median, so no range is ever sorted.
+ * The cumulated weights are summed range by range: when the cumulated weight at some position is
+ * within rounding of half of the total weight, the result may differ from a sequential scan
+ * @author Andrea Campagner
+ *
+ */
+final class WeightedMedian {
+	private static final int INSERTION_SIZE = 16;
+
+	private WeightedMedian(){
+	}
+
+	/**
+	 * Compute the weighted median of the first n values, the arrays are reordered
+	 * @param values, the values
+	 * @param weights, the weight of each value
+	 * @param n, number of values
+	 * @return the weighted median, NaN if the total weight is not positive
+	 */
+	static double select(double[] values, double[] weights, int n){
+		double total = 0;
+		for(int i = 0; i < n; i++)
+			total += weights[i];
+		double half = total/2;
+		if(!(half > 0))
+			return Double.NaN;
+		//weight of the values before lo, value following the range [lo, hi) in increasing order
+		double before = 0;
+		double following = Double.NaN;
+		int lo = 0, hi = n;
+		while(hi - lo > INSERTION_SIZE){
+			double pivot = pivot(values, lo, hi);
+			//Partition in [lo, lt) < pivot, [lt, gt) = pivot, [gt, hi) > pivot
+			int lt = lo, gt = hi, i = lo;
+			double smaller = 0, equal = 0;
+			while(i < gt){
+				int c = Double.compare(values[i], pivot);
+				if(c < 0){
+					smaller += weights[i];
+					swap(values, weights, lt++, i++);
+				}else if(c > 0)
+					swap(values, weights, i, --gt);
+				else{
+					equal += weights[i];
+					i++;
+				}
+			}
+			if(before + smaller >= half && lt > lo){
+				hi = lt;
+				following = pivot;
+			}else if(before + smaller + equal >= half || gt == hi){
+				//the median is the pivot, or the mean of the pivot and the following value
+				if(before + smaller + equal == half && gt < hi)
+					return (pivot + min(values, gt, hi))/2;
+				if(before + smaller + equal == half)
+					return (pivot + following)/2;
+				return pivot;
+			}else{
+				before += smaller + equal;
+				lo = gt;
+			}
+		}
+
+		//Scan the remaining range in increasing order
+		insertionSort(values, weights, lo, hi);
+		double weight = before;
+		for(int i = lo; i < hi; i++){
+			weight += weights[i];
+			if(weight >= half || i == hi - 1){
+				if(weight == half)
+					return (values[i] + ((i + 1 < hi)? values[i + 1] : following))/2;
+				return values[i];
+			}
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * Choose the median of the first, middle and last values of the range as pivot
+	 */
+	private static double pivot(double[] values, int lo, int hi){
+		double a = values[lo], b = values[(lo + hi) >>> 1], c = values[hi - 1];
+		if(Double.compare(a, b) > 0){
+			double t = a;
+			a = b;
+			b = t;
+		}
+		if(Double.compare(b, c) > 0)
+			b = (Double.compare(a, c) > 0)? a : c;
+		return b;
+	}
+
+	private static double min(double[] values, int lo, int hi){
+		double result = values[lo];
+		for(int i = lo + 1; i < hi; i++)
+			if(Double.compare(values[i], result) < 0)
+				result = values[i];
+		return result;
+	}
+
+	private static void insertionSort(double[] values, double[] weights, int lo, int hi){
+		for(int i = lo + 1; i < hi; i++){
+			double v = values[i], w = weights[i];
+			int j = i - 1;
+			while(j >= lo && Double.compare(values[j], v) > 0){
+				values[j + 1] = values[j];
+				weights[j + 1] = weights[j];
+				j--;
+			}
+			values[j + 1] = v;
+			weights[j + 1] = w;
+		}
+	}
+
+	private static void swap(double[] values, double[] weights, int i, int j){
+		double t = values[i];
+		values[i] = values[j];
+		values[j] = t;
+		t = weights[i];
+		weights[i] = weights[j];
+		weights[j] = t;
+	}
+}
@@ -0,0 +1,27 @@
+package roughclustering;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the allocation profiler, reporting the bytes allocated per operation
+ * (gc.alloc.rate.norm) and the collections alongside the timings.
+ * The arguments are regular expressions selecting the benchmarks, all the benchmarks are run if
+ * none is given
+ * @author Andrea Campagner
+ *
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws Exception{
+		OptionsBuilder builder = new OptionsBuilder();
+		if(args.length == 0)
+			builder.include("roughclustering\\..*Benchmark");
+		for(String pattern : args)
+			builder.include(pattern);
+		Options options = builder.addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,83 @@
+package roughclustering;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import weka.core.Instances;
+
+/**
+ * Benchmarks the full training of each clusterer on a synthetic dataset, with the default
+ * options (attribute reweighting and the orthocovering heuristic)
+ * @author Andrea Campagner
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClustererBenchmark {
+
+	@Param({"1000", "10000"})
+	public int n;
+
+	@Param({"4", "16"})
+	public int d;
+
+	@Param({"3", "10"})
+	public int k;
+
+	@Param({"0.7", "0.9"})
+	public double threshold;
+
+	@Param({"10"})
+	public int iterations;
+
+	private Instances data;
+
+	@Setup(Level.Trial)
+	public void setup(){
+		data = SyntheticData.generate(n, d, 0.25, k, 1);
+	}
+
+	@Benchmark
+	public Orthopartition kMeans() throws Exception{
+		RoughKMeansClusterer c = new RoughKMeansClusterer(k, iterations, threshold, 0.3, 0.7, 1, 1);
+		c.buildClusterer(data);
+		return c.getClustering();
+	}
+
+	@Benchmark
+	public Orthopartition kMedians() throws Exception{
+		RoughKMediansClusterer c = new RoughKMediansClusterer(k, iterations, threshold, 0.3, 0.7, 1, 1);
+		c.buildClusterer(data);
+		return c.getClustering();
+	}
+
+	@Benchmark
+	public Orthopartition refinement() throws Exception{
+		RoughRefinementClusterer c = new RoughRefinementClusterer(iterations, threshold);
+		c.buildClusterer(data);
+		return c.getClustering();
+	}
+
+	@Benchmark
+	public Orthopartition streaming() throws Exception{
+		RoughStreamingClusterer c = new RoughStreamingClusterer(k, threshold, 0.3, 0.7);
+		c.buildClusterer(data);
+		return c.getClustering();
+	}
+}
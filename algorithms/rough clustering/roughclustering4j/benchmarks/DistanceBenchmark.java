@@ -0,0 +1,85 @@
+package roughclustering;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import weka.core.Instance;
+import weka.core.Instances;
+
+/**
+ * Benchmarks the distance computations: the distances of all the instances from an instance
+ * (on the instances and on the columnar kernel) and the rough assignment of the whole dataset
+ * @author Andrea Campagner
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+
+	@Param({"1000", "10000"})
+	public int n;
+
+	@Param({"4", "16"})
+	public int d;
+
+	@Param({"3", "10"})
+	public int k;
+
+	@Param({"0.7", "0.9"})
+	public double threshold;
+
+	private Instances data;
+	private RoughKMeansClusterer clusterer;
+	private DistanceKernel kernel;
+	private double[] weights;
+	private double[][] centroids;
+	private Memberships clustering;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception{
+		data = SyntheticData.generate(n, d, 0.25, k, 1);
+		clusterer = new RoughKMeansClusterer(k, 1, threshold, 0.3, 0.7, 1, 1);
+		kernel = clusterer.getKernel(data);
+		weights = new double[data.numAttributes()];
+		for(int a = 0; a < weights.length; a++)
+			weights[a] = 1.0/(data.numAttributes() - 1);
+		centroids = clusterer.setSeed(kernel, 1, weights);
+		clustering = new Memberships(n, k);
+	}
+
+	@Benchmark
+	public void computeDistance(Blackhole bh){
+		Instance x = data.get(0);
+		for(Instance y : data)
+			bh.consume(clusterer.computeDistance(data, x, y, weights));
+	}
+
+	@Benchmark
+	public void kernelDistance(Blackhole bh){
+		for(int i = 0; i < n; i++)
+			bh.consume(kernel.distance(i, centroids[0], weights));
+	}
+
+	@Benchmark
+	public Memberships assign(){
+		clusterer.assign(kernel, centroids, weights, clustering);
+		return clustering;
+	}
+}
@@ -0,0 +1,101 @@
+package roughclustering;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import weka.core.Instances;
+
+/**
+ * Benchmarks the orthopartition computations on the rough clustering of a synthetic dataset:
+ * construction, lower and upper entropy, mutual information, purity and attribute weighting
+ * @author Andrea Campagner
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrthopartitionBenchmark {
+
+	@Param({"1000", "10000"})
+	public int n;
+
+	@Param({"4", "16"})
+	public int d;
+
+	@Param({"3", "10"})
+	public int k;
+
+	@Param({"0.7", "0.9"})
+	public double threshold;
+
+	private Instances data;
+	private RoughKMeansClusterer clusterer;
+	private Memberships clustering;
+	private Memberships other;
+	private Orthopartition pi;
+	private Orthopartition sigma;
+	private double[] weights;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception{
+		data = SyntheticData.generate(n, d, 0.25, k, 1);
+		clusterer = new RoughKMeansClusterer(k, 1, threshold, 0.3, 0.7, 1, 1);
+		DistanceKernel kernel = clusterer.getKernel(data);
+		weights = new double[data.numAttributes()];
+		for(int a = 0; a < weights.length; a++)
+			weights[a] = 1.0/(data.numAttributes() - 1);
+		clustering = new Memberships(n, k);
+		clusterer.assign(kernel, clusterer.setSeed(kernel, 1, weights), weights, clustering);
+		other = new Memberships(n, k);
+		clusterer.assign(kernel, clusterer.setSeed(kernel, 2, weights), weights, other);
+		pi = new Orthopartition(clustering, new Universe(data));
+		sigma = new Orthopartition(other, new Universe(data));
+	}
+
+	@Benchmark
+	public Orthopartition construct() throws Exception{
+		return new Orthopartition(clustering, new Universe(data));
+	}
+
+	@Benchmark
+	public double lowerEntropy() throws Exception{
+		return new Orthopartition(clustering, new Universe(data)).lowerEntropy();
+	}
+
+	@Benchmark
+	public double upperEntropy() throws Exception{
+		return new Orthopartition(clustering, new Universe(data)).upperEntropy();
+	}
+
+	@Benchmark
+	public double mutualInformation() throws Exception{
+		return pi.mutualInformation(sigma);
+	}
+
+	@Benchmark
+	public double purity() throws Exception{
+		return pi.purity(sigma);
+	}
+
+	@Benchmark
+	public double[] weightAttributes() throws Exception{
+		double[] w = weights.clone();
+		clusterer.weightAttributes(data, pi, w);
+		return w;
+	}
+}
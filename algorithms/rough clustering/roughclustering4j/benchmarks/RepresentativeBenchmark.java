@@ -0,0 +1,96 @@
+package roughclustering;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import weka.core.Instances;
+
+/**
+ * Benchmarks the computation of the cluster representatives: weighted median of a numeric attribute
+ * and weighted mode of a nominal attribute, on the instances (orthopair) and on the columnar dataset
+ * (index arrays), for a cluster with a lower region and a boundary
+ * @author Andrea Campagner
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepresentativeBenchmark {
+
+	@Param({"1000", "10000", "100000"})
+	public int n;
+
+	private Instances data;
+	private ColumnarDataset ds;
+	private Orthopair orthopair;
+	private int[] lower;
+	private int[] boundary;
+	private int numeric;
+	private int nominal;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception{
+		data = SyntheticData.generate(n, 4, 0.25, 3, 1);
+		ds = new ColumnarDataset(data);
+		numeric = 0;
+		nominal = data.numAttributes() - 1;
+		//two thirds of the instances in the lower region, one sixth in the boundary
+		int[] list = new int[n];
+		for(int i = 0; i < n; i++)
+			list[i] = i % 6;
+		IntList l = new IntList(), b = new IntList();
+		for(int i = 0; i < n; i++)
+			if(list[i] < 4)
+				l.add(i);
+			else if(list[i] == 4)
+				b.add(i);
+		lower = l.toArray();
+		boundary = b.toArray();
+		ArrayList<ArrayList<Integer>> clustering = new ArrayList<ArrayList<Integer>>();
+		for(int i = 0; i < n; i++){
+			ArrayList<Integer> c = new ArrayList<Integer>();
+			if(list[i] <= 4)
+				c.add(0);
+			if(list[i] >= 4)
+				c.add(1);
+			clustering.add(c);
+		}
+		orthopair = new Orthopartition(clustering, data).getFamily().get(0);
+	}
+
+	@Benchmark
+	public double weightedMedian(){
+		return RoughKMediansClusterer.weightedMedian(data, numeric, orthopair, 0.3, 0.7);
+	}
+
+	@Benchmark
+	public double weightedMedianColumnar(){
+		return RoughKMediansClusterer.weightedMedian(ds, numeric, lower, boundary, 0.3, 0.7);
+	}
+
+	@Benchmark
+	public double weightedMode(){
+		return RoughClusterer.weightedMode(data, nominal, orthopair, 0.3, 0.7);
+	}
+
+	@Benchmark
+	public double weightedModeColumnar(){
+		return RoughClusterer.weightedMode(ds, nominal, lower, boundary, 0.3, 0.7);
+	}
+}
@@ -0,0 +1,61 @@
+package roughclustering;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+/**
+ * Generates the synthetic datasets used by the benchmarks: a mixture of k groups, each with a
+ * random center, over numeric attributes (gaussian around the center) and nominal attributes
+ * (the value of the center with probability 0.7, a random value otherwise)
+ * @author Andrea Campagner
+ *
+ */
+final class SyntheticData {
+	private static final int NUM_VALUES = 5;
+
+	private SyntheticData(){
+	}
+
+	/**
+	 * Generate a dataset
+	 * @param n, number of instances
+	 * @param d, number of attributes
+	 * @param nominal, fraction of nominal attributes
+	 * @param groups, number of groups
+	 * @param seed, seed of the generator
+	 * @return the dataset
+	 */
+	static Instances generate(int n, int d, double nominal, int groups, long seed){
+		Random r = new Random(seed);
+		int numNominal = (int) Math.round(d*nominal);
+		ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+		for(int a = 0; a < d - numNominal; a++)
+			attributes.add(new Attribute("num" + a));
+		ArrayList<String> values = new ArrayList<String>();
+		for(int v = 0; v < NUM_VALUES; v++)
+			values.add("v" + v);
+		for(int a = 0; a < numNominal; a++)
+			attributes.add(new Attribute("nom" + a, values));
+		Instances data = new Instances("synthetic", attributes, n);
+
+		double[][] centers = new double[groups][d];
+		for(int g = 0; g < groups; g++)
+			for(int a = 0; a < d; a++)
+				centers[g][a] = (a < d - numNominal)? 10*r.nextDouble() : r.nextInt(NUM_VALUES);
+		for(int i = 0; i < n; i++){
+			double[] center = centers[r.nextInt(groups)];
+			double[] x = new double[d];
+			for(int a = 0; a < d; a++)
+				if(a < d - numNominal)
+					x[a] = center[a] + r.nextGaussian();
+				else
+					x[a] = (r.nextDouble() < 0.7)? center[a] : r.nextInt(NUM_VALUES);
+			data.add(new DenseInstance(1.0, x));
+		}
+		return data;
+	}
+}